@@ -0,0 +1,78 @@
+package me.escoffier.maven;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.project.MavenProject;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the module name detection on generated source trees, with and without the cached result.
+ *
+ * @author <a href="http://escoffier.me">Clement Escoffier</a>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ModuleDetectionBenchmark {
+
+    /**
+     * The number of packages, each package contains a package-info file and a few classes.
+     */
+    @Param({"10", "1000", "10000"})
+    private int size;
+
+    private File root;
+    private File cache;
+    private MavenProject project;
+    private SilentLog log = new SilentLog();
+
+    @Setup
+    public void setup() throws IOException {
+        root = Files.createTempDirectory("module-detection").toFile();
+        File sources = new File(root, "src/main/java");
+        for (int i = 0; i < size; i++) {
+            File dir = new File(sources, "io/vertx/synthetic/p" + (i % 100) + "/sub" + i);
+            String pkg = "io.vertx.synthetic.p" + (i % 100) + ".sub" + i;
+            // The annotated package-info is the last one to be read
+            String annotation = i == size - 1 ? "@ModuleGen(\n  groupPackage = \"io.vertx\",\n  name = \"synthetic\"\n)\n" : "";
+            write(new File(dir, "package-info.java"), "/**\n * Package " + i + "\n */\n" + annotation
+                + "package " + pkg + ";\n");
+            for (int j = 0; j < 3; j++) {
+                write(new File(dir, "Class" + j + ".java"), "package " + pkg + ";\npublic class Class" + j + " {}\n");
+            }
+        }
+
+        project = new MavenProject();
+        project.setFile(new File(root, "pom.xml"));
+        project.getBuild().setDirectory(new File(root, "target").getAbsolutePath());
+        cache = new File(root, "target/sanitizer/module-name.properties");
+    }
+
+    private static void write(File file, String content) throws IOException {
+        FileUtils.write(file, content, StandardCharsets.UTF_8);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(root);
+    }
+
+    @Benchmark
+    public String scan() throws Exception {
+        Files.deleteIfExists(cache.toPath());
+        return ModuleUtils.findModuleName(log, project);
+    }
+
+    @Benchmark
+    public String cached() throws Exception {
+        return ModuleUtils.findModuleName(log, project);
+    }
+}
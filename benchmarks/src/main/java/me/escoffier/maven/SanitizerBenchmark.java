@@ -0,0 +1,162 @@
+package me.escoffier.maven;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.NullWriter;
+import org.apache.maven.model.Model;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the transformation steps of the {@link Sanitizer} on synthetic models. The steps modifying the model
+ * work on a copy, {@link #copy()} measures the cost of this copy. The project directory is a temporary resource tree
+ * in which one file out of ten is excluded by the default configuration.
+ *
+ * @author <a href="http://escoffier.me">Clement Escoffier</a>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SanitizerBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    private int size;
+
+    private File directory;
+    private String basedir;
+    private Model model;
+    private Configuration configuration;
+    private Sanitizer sanitizer;
+    private String serialized;
+
+    @Setup
+    public void setup() throws Exception {
+        Log log = new SilentLog();
+        directory = Files.createTempDirectory("vertx-synthetic").toFile();
+        basedir = directory.getAbsolutePath();
+        int excluded = createResources(directory, size);
+
+        model = SyntheticModels.create(size, basedir);
+        MavenProject project = new MavenProject(model.clone());
+        project.setFile(new File(directory, "pom.xml"));
+
+        // No configuration file, use the default configuration
+        ParsedConfiguration parsed = ConfigurationLoader.get(null, new File(directory, "missing.yml"), log);
+        configuration = parsed.toConfiguration(project).setModuleName("vertx-synthetic");
+
+        sanitizer = new Sanitizer()
+            .setProject(project)
+            .setConfiguration(configuration, parsed.getHash())
+            .setLog(log);
+        sanitizer.compileRules();
+        sanitizer.indexResources();
+
+        // Otherwise the benchmark would measure an empty index
+        int added = sanitizer.excludeResources(model.clone());
+        if (added != excluded) {
+            throw new IllegalStateException("Expected " + excluded + " resource excludes, got " + added);
+        }
+        serialized = new String(sanitizer.write(model), StandardCharsets.UTF_8).replace("${project.basedir}", basedir);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    /**
+     * Creates the resources of the project, one file out of ten matches the default {@code excluded-resources}
+     * patterns.
+     *
+     * @return the number of excluded files
+     */
+    private static int createResources(File basedir, int size) throws IOException {
+        File resources = new File(basedir, "src/main/resources");
+        int excluded = 0;
+        for (int i = 0; i < size; i++) {
+            File file;
+            if (i % 10 == 0) {
+                file = (i / 10) % 2 == 0 ? new File(resources, "vertx-synthetic/api-" + i + ".rb")
+                    : new File(resources, "vertx-synthetic-js/api-" + i + ".js");
+                excluded++;
+            } else {
+                file = new File(resources, "vertx-synthetic/data-" + (i % 100) + "/file-" + i + ".properties");
+            }
+            FileUtils.writeStringToFile(file, "value=" + i + "\n", StandardCharsets.UTF_8);
+        }
+        return excluded;
+    }
+
+    @Benchmark
+    public Model copy() {
+        return model.clone();
+    }
+
+    @Benchmark
+    public Model fixDependencies() {
+        Model copy = model.clone();
+        sanitizer.fixDependencies(copy, new Metrics(null, null, false).start("fixDependencies"));
+        return copy;
+    }
+
+    @Benchmark
+    public Model cleanupDependencies() {
+        Model copy = model.clone();
+        sanitizer.cleanupDependencies(copy);
+        return copy;
+    }
+
+    @Benchmark
+    public Model excludeDependencies() {
+        Model copy = model.clone();
+        sanitizer.excludeDependencies(copy);
+        return copy;
+    }
+
+    @Benchmark
+    public Model removePlugins() {
+        Model copy = model.clone();
+        sanitizer.removePlugins(copy);
+        return copy;
+    }
+
+    @Benchmark
+    public Model excludeResources() {
+        Model copy = model.clone();
+        sanitizer.excludeResources(copy);
+        return copy;
+    }
+
+    @Benchmark
+    public Model activateProfiles() {
+        Model copy = model.clone();
+        sanitizer.activateProfiles(copy);
+        return copy;
+    }
+
+    @Benchmark
+    public byte[] write() throws Exception {
+        return sanitizer.write(model);
+    }
+
+    /**
+     * The replacement of the project directory (formerly phase C).
+     */
+    @Benchmark
+    public Writer replaceBasedir() throws IOException {
+        Writer writer = new PathReplacingWriter(NullWriter.NULL_WRITER, basedir, "${project.basedir}");
+        writer.write(serialized);
+        writer.close();
+        return writer;
+    }
+}
@@ -0,0 +1,70 @@
+package me.escoffier.maven;
+
+import org.apache.maven.model.*;
+
+/**
+ * Generates synthetic models, one dependency out of ten, one plugin out of ten and two profiles are affected by the
+ * default configuration.
+ *
+ * @author <a href="http://escoffier.me">Clement Escoffier</a>
+ */
+public class SyntheticModels {
+
+    private static final String[] LANGUAGES = {"js", "groovy", "ceylon", "kotlin", "ruby", "scala"};
+
+    private static final String[] PLUGINS = {"kotlin-maven-plugin", "jsdoc3-maven-plugin", "gem-maven-plugin"};
+
+    /**
+     * Creates a model.
+     *
+     * @param size    the number of dependencies, plugins and profiles
+     * @param basedir the project directory, used in the build paths
+     * @return the model
+     */
+    public static Model create(int size, String basedir) {
+        Model model = new Model();
+        model.setModelVersion("4.0.0");
+        model.setGroupId("io.vertx");
+        model.setArtifactId("vertx-synthetic");
+        model.setVersion("1.0.0");
+
+        for (int i = 0; i < size; i++) {
+            Dependency dependency = new Dependency();
+            if (i % 10 == 0) {
+                dependency.setGroupId("io.vertx");
+                dependency.setArtifactId("vertx-lang-" + LANGUAGES[(i / 10) % LANGUAGES.length]);
+            } else {
+                dependency.setGroupId("com.example.group" + (i % 50));
+                dependency.setArtifactId("dependency-" + i);
+            }
+            dependency.setVersion("1.0." + i);
+            dependency.setScope(i % 4 == 0 ? "test" : "compile");
+            model.addDependency(dependency);
+        }
+
+        Build build = new Build();
+        build.setDirectory(basedir + "/target");
+        build.setOutputDirectory(basedir + "/target/classes");
+        build.setSourceDirectory(basedir + "/src/main/java");
+        for (int i = 0; i < size; i++) {
+            Plugin plugin = new Plugin();
+            plugin.setGroupId("com.example.plugins");
+            plugin.setArtifactId(i % 10 == 0 ? PLUGINS[(i / 10) % PLUGINS.length] : "plugin-" + i + "-maven-plugin");
+            plugin.setVersion("1.0");
+            build.addPlugin(plugin);
+        }
+        for (String dir : new String[]{"src/main/resources", "src/main/generated", "src/main/asciidoc"}) {
+            Resource resource = new Resource();
+            resource.setDirectory(basedir + "/" + dir);
+            build.addResource(resource);
+        }
+        model.setBuild(build);
+
+        for (int i = 0; i < size; i++) {
+            Profile profile = new Profile();
+            profile.setId(i == 0 ? "docs" : (i == 1 ? "release" : "profile-" + i));
+            model.addProfile(profile);
+        }
+        return model;
+    }
+}
@@ -0,0 +1,111 @@
+package me.escoffier.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Generates a large synthetic reactor, used to stress the goals executed concurrently by a multithreaded build
+ * ({@code -T 1C}). The modules form chains of five dependent modules, so independent modules are built in parallel
+ * while the reactor order still matters. Each module contains excluded resources, kept resources, a class and an
+ * excluded dependency.
+ * <p>
+ * Usage: {@code java -cp target/benchmarks.jar me.escoffier.maven.SyntheticReactor <directory> [modules]}
+ *
+ * @author <a href="http://escoffier.me">Clement Escoffier</a>
+ */
+public class SyntheticReactor {
+
+    private static final int CHAIN = 5;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: SyntheticReactor <directory> [modules]");
+            System.exit(1);
+        }
+        File root = new File(args[0]);
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        generate(root, size);
+        System.out.println(size + " modules generated in " + root.getAbsolutePath());
+    }
+
+    /**
+     * Generates the reactor.
+     *
+     * @param root the reactor directory
+     * @param size the number of modules
+     * @throws IOException if a file cannot be written
+     */
+    public static void generate(File root, int size) throws IOException {
+        StringBuilder modules = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            String name = name(i);
+            modules.append("    <module>").append(name).append("</module>\n");
+            module(new File(root, name), i);
+        }
+        write(new File(root, "pom.xml"), "<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n"
+            + "  <modelVersion>4.0.0</modelVersion>\n"
+            + "  <groupId>io.vertx.synthetic</groupId>\n"
+            + "  <artifactId>synthetic-reactor</artifactId>\n"
+            + "  <version>1.0</version>\n"
+            + "  <packaging>pom</packaging>\n"
+            + "  <modules>\n" + modules + "  </modules>\n"
+            + "  <properties>\n"
+            + "    <project.build.sourceEncoding>UTF-8</project.build.sourceEncoding>\n"
+            + "    <maven.compiler.source>1.8</maven.compiler.source>\n"
+            + "    <maven.compiler.target>1.8</maven.compiler.target>\n"
+            + "  </properties>\n"
+            + "</project>\n");
+    }
+
+    private static void module(File dir, int index) throws IOException {
+        String name = name(index);
+        StringBuilder dependencies = new StringBuilder();
+        dependencies.append(dependency("io.vertx", "vertx-lang-js", "3.0.0"));
+        if (index % CHAIN != 0) {
+            dependencies.append(dependency("io.vertx.synthetic", name(index - 1), "1.0"));
+        }
+        write(new File(dir, "pom.xml"), "<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n"
+            + "  <modelVersion>4.0.0</modelVersion>\n"
+            + "  <parent>\n"
+            + "    <groupId>io.vertx.synthetic</groupId>\n"
+            + "    <artifactId>synthetic-reactor</artifactId>\n"
+            + "    <version>1.0</version>\n"
+            + "  </parent>\n"
+            + "  <artifactId>" + name + "</artifactId>\n"
+            + "  <dependencies>\n" + dependencies + "  </dependencies>\n"
+            + "</project>\n");
+
+        String pkg = "io.vertx.synthetic." + name;
+        write(new File(dir, "src/main/java/" + pkg.replace('.', '/') + "/Api.java"), "package " + pkg + ";\n\n"
+            + "public class Api {\n"
+            + (index % CHAIN != 0 ? "    public final io.vertx.synthetic." + name(index - 1) + ".Api previous = null;\n"
+            : "")
+            + "}\n");
+        // The module name is detected from the resource directories
+        write(new File(dir, "src/main/resources/" + name + "/api.rb"), "# " + name + "\n");
+        write(new File(dir, "src/main/resources/" + name + "-js/api.js"), "// " + name + "\n");
+        write(new File(dir, "src/main/resources/" + name + ".properties"), "name=" + name + "\n");
+    }
+
+    private static String dependency(String groupId, String artifactId, String version) {
+        return "    <dependency>\n"
+            + "      <groupId>" + groupId + "</groupId>\n"
+            + "      <artifactId>" + artifactId + "</artifactId>\n"
+            + "      <version>" + version + "</version>\n"
+            + "    </dependency>\n";
+    }
+
+    private static String name(int index) {
+        return String.format("m%04d", index);
+    }
+
+    private static void write(File file, String content) throws IOException {
+        File dir = file.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Unable to create " + dir.getAbsolutePath());
+        }
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,47 @@
+// Generates the modules of the synthetic reactor, as the SyntheticReactor of the benchmarks: chains of five dependent
+// modules, each one with excluded resources, a kept resource, a class and an excluded dependency
+def chain = 5
+def name = { int index -> String.format("m%04d", index) }
+def write = { File file, String content ->
+    file.parentFile.mkdirs()
+    file.setText(content, "UTF-8")
+}
+def dependency = { String groupId, String artifactId, String version ->
+    """    <dependency>
+      <groupId>${groupId}</groupId>
+      <artifactId>${artifactId}</artifactId>
+      <version>${version}</version>
+    </dependency>
+"""
+}
+
+def modules = (new File(basedir, "pom.xml").getText("UTF-8") =~ /<module>/).count
+for (int i = 0; i < modules; i++) {
+    def dir = new File(basedir, name(i))
+    def dependencies = dependency("io.vertx", "vertx-lang-js", "3.0.0")
+    if (i % chain != 0) {
+        dependencies += dependency("io.vertx.synthetic", name(i - 1), "1.0")
+    }
+    write(new File(dir, "pom.xml"), """<project xmlns="http://maven.apache.org/POM/4.0.0">
+  <modelVersion>4.0.0</modelVersion>
+  <parent>
+    <groupId>io.vertx.synthetic</groupId>
+    <artifactId>synthetic-reactor</artifactId>
+    <version>1.0</version>
+  </parent>
+  <artifactId>${name(i)}</artifactId>
+  <dependencies>
+${dependencies}  </dependencies>
+</project>
+""")
+
+    def pkg = "io.vertx.synthetic." + name(i)
+    def previous = i % chain != 0 ? "    public final io.vertx.synthetic.${name(i - 1)}.Api previous = null;\n" : ""
+    write(new File(dir, "src/main/java/" + pkg.replace('.', '/') + "/Api.java"),
+        "package ${pkg};\n\npublic class Api {\n${previous}}\n")
+    // The module name is detected from the resource directories
+    write(new File(dir, "src/main/resources/${name(i)}/api.rb"), "# ${name(i)}\n")
+    write(new File(dir, "src/main/resources/${name(i)}-js/api.js"), "// ${name(i)}\n")
+    write(new File(dir, "src/main/resources/${name(i)}.properties"), "name=${name(i)}\n")
+}
+return true
@@ -0,0 +1,26 @@
+import java.util.zip.ZipFile
+
+// The sanitized poms generated concurrently must be the ones generated by a single thread, and the artifacts built
+// concurrently from them must be sanitized
+def modules = (new File(basedir, "pom.xml").getText("UTF-8") =~ /<module>([^<]+)<\/module>/).collect { it[1] }
+for (String module : modules) {
+    def dir = new File(basedir, module)
+    def serial = new File(dir, "pom.xml.serial")
+    def sanitized = new File(dir, "pom.xml.sanitized")
+    assert serial.isFile() : "${serial} not generated"
+    assert sanitized.isFile() : "${sanitized} not generated"
+    assert serial.getText("UTF-8") == sanitized.getText("UTF-8") : "${module}: the concurrent sanitized pom differs"
+    def dependencies = sanitized.getText("UTF-8").replaceAll(/(?s)<exclusions>.*?<\/exclusions>/, "")
+    assert !dependencies.contains("vertx-lang-js") : "${module}: vertx-lang-js not removed"
+
+    def jar = new File(dir, "target/${module}-1.0.jar")
+    assert jar.isFile() : "${jar} not built"
+    def entries = new ZipFile(jar).withCloseable { zip -> zip.entries().collect { it.name } }
+    assert entries.contains("io/vertx/synthetic/${module}/Api.class".toString()) : "${module}: class missing"
+    assert entries.contains("${module}.properties".toString()) : "${module}: kept resource missing"
+    assert !entries.any { it.endsWith(".rb") || it.endsWith(".js") } : "${module}: excluded resources packaged"
+}
+
+def log = new File(basedir, "build.log").getText("UTF-8")
+assert !log.contains("is not marked as thread-safe") : "a goal is not thread-safe"
+return true
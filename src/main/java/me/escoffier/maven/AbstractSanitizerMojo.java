@@ -1,20 +1,35 @@
 package me.escoffier.maven;
 
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.RepositoryUtils;
 import org.apache.maven.execution.MavenSession;
 import org.apache.maven.lifecycle.LifecycleExecutor;
+import org.apache.maven.model.Resource;
+import org.apache.maven.model.building.ModelBuilder;
+import org.apache.maven.model.building.ModelBuildingRequest;
+import org.apache.maven.model.building.ModelCache;
 import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.Parameter;
-import org.apache.maven.project.MavenProject;
-import org.apache.maven.project.ProjectBuilder;
+import org.apache.maven.project.*;
 import org.codehaus.plexus.PlexusConstants;
 import org.codehaus.plexus.PlexusContainer;
 import org.codehaus.plexus.context.Context;
 import org.codehaus.plexus.context.ContextException;
 import org.codehaus.plexus.personality.plexus.lifecycle.phase.Contextualizable;
+import org.eclipse.aether.RepositorySystem;
 import org.eclipse.aether.RepositorySystemSession;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
 
 /**
  * @author <a href="http://escoffier.me">Clement Escoffier</a>
@@ -37,6 +52,18 @@ public abstract class AbstractSanitizerMojo extends AbstractMojo implements Cont
 
     @Component
     ProjectBuilder projectBuilder;
+
+    /**
+     * The model builder used to compute the effective model of in-memory poms.
+     */
+    @Component
+    ModelBuilder modelBuilder;
+
+    /**
+     * The repository system used to resolve parent poms.
+     */
+    @Component
+    RepositorySystem repositorySystem;
     
     /**
      * The component used to execute the second Maven execution.
@@ -47,7 +74,353 @@ public abstract class AbstractSanitizerMojo extends AbstractMojo implements Cont
 
     @Parameter(property = "sanitizer.pom", defaultValue = "pom.xml.sanitized")
     File pom;
-    
+
+    /**
+     * Whether a JSON report of the duration and allocations of each phase is written in
+     * {@code target/sanitizer/<goal>-report.json}.
+     */
+    @Parameter(property = "sanitizer.report", defaultValue = "true")
+    boolean report;
+
+    /**
+     * Whether the dependency management of the imported poms is cached in the local repository, so it is reused
+     * across builds.
+     */
+    @Parameter(property = "sanitizer.persistentCache", defaultValue = "true")
+    boolean persistentCache;
+
+    /**
+     * Whether the effective models are built without processing the plugins, with the minimal validation and
+     * without accessing the remote repositories. The lifecycle plugins and their default versions are then not
+     * written in the sanitized poms.
+     */
+    @Parameter(property = "sanitizer.lightweight", defaultValue = "false")
+    boolean lightweight;
+
+    /**
+     * Whether the exclusions are only added to the dependencies whose dependency graph reaches an excluded
+     * artifact. The graphs are collected from the repositories. By default, the exclusions are added to every
+     * compile dependency.
+     */
+    @Parameter(property = "sanitizer.graphExclusions", defaultValue = "false")
+    boolean graphExclusions;
+
+    /**
+     * How the sanitized poms are written: {@code model} writes the sanitized effective model, {@code patch} patches
+     * the original pom, keeping its formatting, comments, parent and dependency management. With {@code patch}, the
+     * inherited dependencies and plugins are not sanitized.
+     */
+    @Parameter(property = "sanitizer.writer", defaultValue = "model")
+    String writer;
+
+    /**
+     * Whether the nested builds reuse the classes compiled by the original build instead of compiling them again.
+     * The outputs are copied to the output directory of the nested build, the main compilation (and the annotation
+     * processors, such as the code generation) is skipped, only the resources are copied again, and the project
+     * packaged and installed. Only enabled for the projects whose output directory exists.
+     */
+    @Parameter(property = "sanitizer.reuseOutputs", defaultValue = "false")
+    boolean reuseOutputs;
+
+    /**
+     * Whether the nested builds skip the tests.
+     */
+    @Parameter(property = "sanitizer.skipTests", defaultValue = "true")
+    boolean skipTests;
+
+    /**
+     * Additional user properties of the nested builds.
+     */
+    @Parameter
+    Map<String, String> buildProperties;
+
+    /**
+     * Whether the phases are also emitted as JFR events ({@code me.escoffier.maven.SanitizerPhase}), only useful
+     * when a flight recording is running.
+     */
+    @Parameter(property = "sanitizer.jfr", defaultValue = "false")
+    boolean jfr;
+
+    /**
+     * @return whether the sanitized poms are written by patching the original poms
+     * @throws MojoExecutionException if the writer is not supported
+     */
+    boolean isPatchWriter() throws MojoExecutionException {
+        if ("patch".equalsIgnoreCase(writer)) {
+            return true;
+        }
+        if ("model".equalsIgnoreCase(writer)) {
+            return false;
+        }
+        throw new MojoExecutionException("Unsupported writer " + writer + ", use 'model' or 'patch'");
+    }
+
+    /**
+     * Gets the sanitized pom of a variant, named after the {@code sanitizer.pom} file: {@code pom.xml.sanitized}
+     * becomes {@code pom-<variant>.xml.sanitized}.
+     *
+     * @param variant the variant name
+     * @return the sanitized pom of the variant
+     */
+    File getVariantPom(String variant) {
+        return getVariantPom(pom.getAbsoluteFile(), variant);
+    }
+
+    /**
+     * @param output  the sanitized pom of a project
+     * @param variant the variant
+     * @return the sanitized pom of the variant, next to the given one
+     */
+    static File getVariantPom(File output, String variant) {
+        String name = output.getName();
+        int index = name.indexOf('.');
+        String file = index == -1 ? name + "-" + variant : name.substring(0, index) + "-" + variant
+            + name.substring(index);
+        return new File(output.getParentFile(), file);
+    }
+
+    /**
+     * Creates the analyzer of the dependency graphs, used to add the exclusions only where needed.
+     *
+     * @return the analyzer
+     */
+    DependencyGraphAnalyzer createDependencyGraphAnalyzer() {
+        return new DependencyGraphAnalyzer()
+            .setRepoSession(repoSession)
+            .setRepositorySystem(repositorySystem)
+            .setRepositories(RepositoryUtils.toRepos(session.getRequest().getRemoteRepositories()))
+            .setLog(getLog());
+    }
+
+    /**
+     * Creates the executor of the nested builds.
+     *
+     * @param metrics the metrics of the goal
+     * @return the executor
+     */
+    MavenBuildExecutor createBuildExecutor(Metrics metrics) {
+        return new MavenBuildExecutor()
+            .setContainer(container)
+            .setExecutor(lifecycleExecutor)
+            .setLog(getLog())
+            .setProjectBuilder(projectBuilder)
+            .setRepoSession(repoSession)
+            .setSession(session)
+            .setMetrics(metrics);
+    }
+
+    /**
+     * @return the user properties of the nested builds: {@code skipTests} and the {@code buildProperties}
+     */
+    Properties getBuildProperties() {
+        Properties props = new Properties();
+        if (skipTests) {
+            props.put("skipTests", "true");
+        }
+        if (buildProperties != null) {
+            props.putAll(buildProperties);
+        }
+        return props;
+    }
+
+    /**
+     * Prepares the nested build of the sanitized poms of the given projects. The nested build uses its own output
+     * directory, {@code ${project.build.directory}/sanitized-classes}, so the output directory of the original build
+     * is left untouched. When the outputs are reused, the classes and resources of the original build are copied
+     * there. The excluded resources copied by a previous build are then removed from it, as the nested build only
+     * copies the included ones.
+     *
+     * @param modules  the projects
+     * @param executor the executor of the nested build, receiving the output directories
+     * @return the user properties of the nested build
+     * @throws MojoExecutionException if the outputs cannot be copied or the excluded resources removed
+     */
+    Properties prepareBuild(Collection<MavenProject> modules, MavenBuildExecutor executor)
+        throws MojoExecutionException {
+        Properties props = getBuildProperties();
+        boolean compiled = reuseOutputs;
+        for (MavenProject module : modules) {
+            compiled = compiled && new File(module.getBuild().getOutputDirectory()).isDirectory();
+        }
+        Map<File, File> outputs = new HashMap<>();
+        for (MavenProject module : modules) {
+            File original = new File(module.getBuild().getOutputDirectory());
+            File output = new File(module.getBuild().getDirectory(), "sanitized-classes");
+            try {
+                if (compiled) {
+                    FileUtils.deleteDirectory(output);
+                    FileUtils.copyDirectory(original, output);
+                }
+            } catch (IOException e) {
+                throw new MojoExecutionException("Unable to copy the outputs of " + module.getId(), e);
+            }
+            removeExcludedOutputs(module, output);
+            outputs.put(module.getBasedir(), output);
+        }
+        executor.setOutputDirectories(outputs);
+        if (compiled) {
+            getLog().info("Reusing the compiled classes of the original build");
+            props.put("maven.main.skip", "true");
+        } else if (reuseOutputs) {
+            getLog().warn("The original build outputs are missing, compiling the sanitized projects");
+        }
+        return props;
+    }
+
+    private void removeExcludedOutputs(MavenProject module, File output) throws MojoExecutionException {
+        File manifest = Sanitizer.getManifest(module, "excluded-resources", null);
+        try {
+            ResourceIndex index = ResourceIndex.read(module.getBasedir(), manifest);
+            int removed = 0;
+            for (Resource resource : module.getBuild().getResources()) {
+                File directory = resource.getTargetPath() == null ? output
+                    : new File(output, resource.getTargetPath());
+                for (String file : index.getExcludedFiles(module.getBasedir(), resource.getDirectory())) {
+                    File copy = new File(directory, file);
+                    if (Files.deleteIfExists(copy.toPath())) {
+                        removed++;
+                        // Remove the directories left empty, so they are not packaged
+                        File parent = copy.getParentFile();
+                        while (!parent.equals(output) && parent.delete()) {
+                            parent = parent.getParentFile();
+                        }
+                    }
+                }
+            }
+            if (removed > 0) {
+                getLog().debug("Removed " + removed + " excluded resource(s) from " + output.getAbsolutePath());
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to remove the excluded resources of " + module.getId(), e);
+        }
+    }
+
+    /**
+     * Compiles the {@code excluded-resources} patterns of the configuration against the resource roots of the
+     * project.
+     *
+     * @param configuration the configuration
+     * @return the matcher
+     */
+    ResourceMatcher createResourceMatcher(Configuration configuration) {
+        return createResourceMatcher(configuration, project);
+    }
+
+    /**
+     * Compiles the {@code excluded-resources} patterns of the configuration against the resource roots of the
+     * given project.
+     *
+     * @param configuration the configuration
+     * @param module        the project
+     * @return the matcher
+     */
+    ResourceMatcher createResourceMatcher(Configuration configuration, MavenProject module) {
+        List<String> roots = new ArrayList<>();
+        for (Resource resource : module.getBuild().getResources()) {
+            roots.add(resource.getDirectory());
+        }
+        return ResourceMatcher.compile(configuration.getExcludedResources(), configuration.getModuleName(),
+            module.getBasedir(), roots);
+    }
+
+    /**
+     * Creates the metrics of a goal executed on the given project.
+     *
+     * @param module the project
+     * @param goal   the goal name
+     * @return the metrics
+     */
+    Metrics createMetrics(MavenProject module, String goal) {
+        return new Metrics(module.getId(), goal, jfr);
+    }
+
+    /**
+     * Writes the report of the given metrics in the build directory of the project, if enabled. Failing to write
+     * the report does not fail the build.
+     *
+     * @param module  the project
+     * @param goal    the goal name
+     * @param metrics the metrics
+     */
+    void writeReport(MavenProject module, String goal, Metrics metrics) {
+        if (!report) {
+            return;
+        }
+        File file = new File(module.getBuild().getDirectory(), "sanitizer/" + goal + "-report.json");
+        try {
+            metrics.write(file);
+            getLog().debug("Report written to " + file.getAbsolutePath());
+        } catch (IOException e) {
+            getLog().warn("Unable to write the report " + file.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Creates the builder computing the effective model of the patched poms.
+     *
+     * @return the builder
+     */
+    EffectiveModelBuilder createEffectiveModelBuilder() {
+        return new EffectiveModelBuilder()
+            .setSession(session)
+            .setRepoSession(repoSession)
+            .setRepositorySystem(repositorySystem)
+            .setModelBuilder(modelBuilder)
+            .setRepositories(RepositoryUtils.toRepos(session.getRequest().getRemoteRepositories()))
+            .setModelCache(createModelCache())
+            .setLightweight(lightweight)
+            .setLog(getLog());
+    }
+
+    /**
+     * Loads the project of the given pom, without resolving its dependencies. The request is a copy of the one of
+     * the session, so the project shares its repository session.
+     *
+     * @param file the pom
+     * @return the project
+     * @throws MojoExecutionException if the project cannot be loaded
+     */
+    MavenProject loadProject(File file) throws MojoExecutionException {
+        return loadProject(file, null);
+    }
+
+    /**
+     * Loads the project of the given pom, without resolving its dependencies, with additional user properties.
+     *
+     * @param file       the pom
+     * @param properties the user properties added to the ones of the session, {@code null} if none
+     * @return the project
+     * @throws MojoExecutionException if the project cannot be loaded
+     */
+    MavenProject loadProject(File file, Properties properties) throws MojoExecutionException {
+        ProjectBuildingRequest request = new DefaultProjectBuildingRequest(session.getProjectBuildingRequest());
+        if (properties != null) {
+            Properties user = new Properties();
+            user.putAll(session.getUserProperties());
+            user.putAll(properties);
+            request.setUserProperties(user);
+        }
+        request.setProject(null);
+        request.setResolveDependencies(false);
+        request.setProcessPlugins(false);
+        request.setValidationLevel(ModelBuildingRequest.VALIDATION_LEVEL_MINIMAL);
+        try {
+            return projectBuilder.build(file, request).getProject();
+        } catch (ProjectBuildingException e) {
+            throw new MojoExecutionException("Unable to load the project " + file.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Creates the cache of the parent and imported models, shared by the model building requests of a goal.
+     *
+     * @return the cache
+     */
+    ModelCache createModelCache() {
+        return persistentCache ? new PersistentModelCache(repoSession, PersistentModelCache.hashContext(session),
+            getLog()) : new ConcurrentModelCache();
+    }
+
     /**
      * Retrieves the Plexus container.
      *
@@ -0,0 +1,179 @@
+package me.escoffier.maven;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Removes the excluded resources from a jar or zip archive. The archive is processed in a single streaming pass:
+ * the kept entries are copied with their compressed bytes, without being inflated and deflated again, so the memory
+ * used does not depend on the archive size. The sanitized pom can be embedded under {@code META-INF/maven},
+ * replacing the descriptors of the original project.
+ *
+ * @author <a href="http://escoffier.me">Clement Escoffier</a>
+ */
+public class ArchiveSanitizer {
+
+    private static final String MAVEN_DESCRIPTORS = "META-INF/maven/";
+
+    private ResourceMatcher matcher;
+    private final Map<String, byte[]> descriptors = new LinkedHashMap<>();
+    private String pomDirectory;
+    private String originalDirectory;
+
+    public ArchiveSanitizer setMatcher(ResourceMatcher matcher) {
+        this.matcher = matcher;
+        return this;
+    }
+
+    /**
+     * Embeds the given pom as {@code META-INF/maven/groupId/artifactId/pom.xml}, with its {@code pom.properties}.
+     * The descriptors already present in this directory are replaced, the ones of the original project are removed
+     * if declared with {@link #setOriginal(String, String)}.
+     *
+     * @param pom        the content of the pom
+     * @param groupId    the groupId of the pom
+     * @param artifactId the artifactId of the pom
+     * @param version    the version of the pom
+     */
+    public ArchiveSanitizer setPom(byte[] pom, String groupId, String artifactId, String version) {
+        descriptors.clear();
+        String dir = MAVEN_DESCRIPTORS + groupId + "/" + artifactId + "/";
+        pomDirectory = dir;
+        String properties = "version=" + version + "\n"
+            + "groupId=" + groupId + "\n"
+            + "artifactId=" + artifactId + "\n";
+        descriptors.put(dir + "pom.xml", pom);
+        descriptors.put(dir + "pom.properties", properties.getBytes(StandardCharsets.UTF_8));
+        return this;
+    }
+
+    /**
+     * Declares the coordinates of the original project, whose descriptors are removed when a pom is embedded. The
+     * descriptors of the other projects, such as the dependencies embedded in a shaded jar, are kept.
+     *
+     * @param groupId    the groupId of the original project
+     * @param artifactId the artifactId of the original project
+     */
+    public ArchiveSanitizer setOriginal(String groupId, String artifactId) {
+        originalDirectory = MAVEN_DESCRIPTORS + groupId + "/" + artifactId + "/";
+        return this;
+    }
+
+    /**
+     * Sanitizes an archive. The output is written in a temporary file moved in place once complete, so the input
+     * and the output can be the same file.
+     *
+     * @param input  the archive
+     * @param output the sanitized archive
+     * @return the summary of the removed entries
+     * @throws IOException if the archive cannot be read or written
+     */
+    public Result sanitize(File input, File output) throws IOException {
+        File dir = output.getAbsoluteFile().getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Unable to create " + dir.getAbsolutePath());
+        }
+        Path tmp = Files.createTempFile(dir.toPath(), output.getName(), ".tmp");
+        Result result = new Result();
+        try {
+            try (ZipFile zip = new ZipFile(input);
+                 ZipArchiveOutputStream out = new ZipArchiveOutputStream(tmp.toFile())) {
+                Enumeration<ZipArchiveEntry> entries = zip.getEntriesInPhysicalOrder();
+                while (entries.hasMoreElements()) {
+                    ZipArchiveEntry entry = entries.nextElement();
+                    if (isDescriptor(entry.getName())) {
+                        result.replaced++;
+                    } else if (isExcluded(entry.getName())) {
+                        result.removed++;
+                        result.removedBytes += Math.max(0, entry.getSize());
+                    } else {
+                        out.addRawArchiveEntry(entry, zip.getRawInputStream(entry));
+                        result.kept++;
+                    }
+                }
+                for (Map.Entry<String, byte[]> descriptor : descriptors.entrySet()) {
+                    ZipArchiveEntry entry = new ZipArchiveEntry(descriptor.getKey());
+                    entry.setTime(input.lastModified());
+                    out.putArchiveEntry(entry);
+                    out.write(descriptor.getValue());
+                    out.closeArchiveEntry();
+                    result.kept++;
+                }
+            }
+            move(tmp, output.toPath());
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return result;
+    }
+
+    private boolean isDescriptor(String name) {
+        if (descriptors.isEmpty() || !(name.endsWith("/pom.xml") || name.endsWith("/pom.properties"))) {
+            return false;
+        }
+        String dir = name.substring(0, name.lastIndexOf('/') + 1);
+        return dir.equals(pomDirectory) || dir.equals(originalDirectory);
+    }
+
+    private boolean isExcluded(String name) {
+        return matcher != null && !name.endsWith("/") && matcher.matches(name);
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * The summary of a sanitization.
+     */
+    public static class Result {
+        private int kept;
+        private int removed;
+        private int replaced;
+        private long removedBytes;
+
+        /**
+         * @return the number of entries written in the sanitized archive
+         */
+        public int getKept() {
+            return kept;
+        }
+
+        /**
+         * @return the number of removed entries
+         */
+        public int getRemoved() {
+            return removed;
+        }
+
+        /**
+         * @return the number of Maven descriptors of the original project that have been replaced
+         */
+        public int getReplaced() {
+            return replaced;
+        }
+
+        /**
+         * @return the uncompressed size of the removed entries
+         */
+        public long getRemovedBytes() {
+            return removedBytes;
+        }
+    }
+}
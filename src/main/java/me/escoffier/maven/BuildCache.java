@@ -0,0 +1,238 @@
+package me.escoffier.maven;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.apache.maven.model.Resource;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.DefaultArtifact;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A content-addressed cache of the artifacts built from sanitized poms. The key of a build is computed from the
+ * sanitized pom, its resolved dependencies (and the content of the snapshots), the content of the source and
+ * resource directories (and of the test ones when the tests are executed), the executed phase, the user properties
+ * and the active and inactive profiles.
+ * When a build with the same key has already succeeded, its artifacts are restored (copied, or hard linked)
+ * instead of being built again.
+ * <p>
+ * Each entry is a directory named after the key, containing the artifact files and an {@code artifacts.properties}
+ * index. Entries are written in a temporary directory and then renamed, so a partial entry is never used.
+ *
+ * @author <a href="http://escoffier.me">Clement Escoffier</a>
+ */
+public class BuildCache {
+
+    private static final String INDEX = "artifacts.properties";
+
+    private final File directory;
+    private final boolean links;
+    private final Log log;
+
+    /**
+     * @param directory the cache directory
+     * @param links     whether the artifacts are restored as hard links, the restored files must then not be
+     *                  modified in place
+     * @param log       the logger
+     */
+    public BuildCache(File directory, boolean links, Log log) {
+        this.directory = directory;
+        this.links = links;
+        this.log = log;
+    }
+
+    /**
+     * Computes the key of the build of a sanitized pom.
+     *
+     * @param pom          the sanitized pom
+     * @param project      the original project, giving the source and resource directories
+     * @param phase        the executed phase
+     * @param properties   all the user properties of the build, the ones of the session included
+     * @param active       the ids of the profiles activated by the build
+     * @param inactive     the ids of the profiles deactivated by the build
+     * @param dependencies the resolved dependencies of the sanitized pom, with their files
+     * @return the key
+     * @throws IOException if a file cannot be read
+     */
+    public String computeKey(File pom, MavenProject project, String phase, Properties properties,
+                             List<String> active, List<String> inactive, List<Artifact> dependencies)
+        throws IOException {
+        Hasher hasher = Hashing.sha256().newHasher();
+        hasher.putString("pom=", StandardCharsets.UTF_8).putBytes(Files.readAllBytes(pom.toPath()));
+        hasher.putString("phase=" + phase + ";properties=" + new TreeMap<>(properties) + ";active=" + active
+            + ";inactive=" + inactive, StandardCharsets.UTF_8);
+
+        // The released artifacts are immutable, the snapshots may be rebuilt with the same version
+        for (Artifact dependency : dependencies) {
+            hasher.putString("dependency=" + dependency, StandardCharsets.UTF_8);
+            if (dependency.isSnapshot() && dependency.getFile() != null && dependency.getFile().isFile()) {
+                hasher.putBytes(Files.readAllBytes(dependency.getFile().toPath()));
+            }
+        }
+
+        Set<String> roots = new TreeSet<>(project.getCompileSourceRoots());
+        for (Resource resource : project.getBuild().getResources()) {
+            roots.add(resource.getDirectory());
+        }
+        roots.add(project.getBuild().getScriptSourceDirectory());
+        // A restored build skips the tests, so the tests must not have changed since the cached build ran them
+        boolean tests = !isSkipped(properties, "skipTests") && !isSkipped(properties, "maven.test.skip");
+        hasher.putString("tests=" + tests, StandardCharsets.UTF_8);
+        if (tests) {
+            roots.addAll(project.getTestCompileSourceRoots());
+            for (Resource resource : project.getBuild().getTestResources()) {
+                roots.add(resource.getDirectory());
+            }
+        }
+        Path basedir = project.getBasedir().toPath();
+        for (String root : roots) {
+            Path path = Paths.get(root);
+            if (!Files.isDirectory(path)) {
+                continue;
+            }
+            // The paths are relative to the project, so the key does not depend on the checkout location
+            hasher.putString("root=" + basedir.relativize(path.toAbsolutePath()), StandardCharsets.UTF_8);
+            List<Path> files;
+            try (Stream<Path> stream = Files.walk(path)) {
+                files = stream.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+            }
+            for (Path file : files) {
+                hasher.putString("file=" + path.relativize(file), StandardCharsets.UTF_8)
+                    .putBytes(Files.readAllBytes(file));
+            }
+        }
+        return hasher.hash().toString();
+    }
+
+    /**
+     * @return whether the given boolean property is set, an empty value meaning {@code true} as for {@code -DskipTests}
+     */
+    private static boolean isSkipped(Properties properties, String name) {
+        String value = properties.getProperty(name);
+        return value != null && (value.isEmpty() || Boolean.parseBoolean(value));
+    }
+
+    /**
+     * Restores the artifacts of a previous build.
+     *
+     * @param key    the key of the build
+     * @param target the directory receiving the artifact files
+     * @return the restored artifacts, with their files, {@code null} if the cache does not contain the build
+     * @throws IOException if the artifacts cannot be restored
+     */
+    public List<Artifact> restore(String key, File target) throws IOException {
+        File entry = new File(directory, key);
+        File index = new File(entry, INDEX);
+        if (!index.isFile()) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(index)) {
+            properties.load(in);
+        }
+        List<Artifact> artifacts = new ArrayList<>();
+        for (String name : new TreeSet<>(properties.stringPropertyNames())) {
+            File source = new File(entry, name);
+            if (!source.isFile()) {
+                log.debug("Incomplete build cache entry " + entry.getAbsolutePath());
+                return null;
+            }
+            // groupId:artifactId:extension:classifier:version, the classifier may be empty
+            String[] segments = properties.getProperty(name).split(":", -1);
+            artifacts.add(new DefaultArtifact(segments[0], segments[1], segments[3], segments[2], segments[4])
+                .setFile(new File(target, name)));
+        }
+        if (!target.isDirectory() && !target.mkdirs()) {
+            throw new IOException("Unable to create " + target.getAbsolutePath());
+        }
+        for (Artifact artifact : artifacts) {
+            link(new File(entry, artifact.getFile().getName()).toPath(), artifact.getFile().toPath());
+        }
+        return artifacts;
+    }
+
+    /**
+     * Stores the artifacts of a successful build. Failing to store them does not fail the build.
+     *
+     * @param key     the key of the build
+     * @param project the built project
+     */
+    public void store(String key, MavenProject project) {
+        File entry = new File(directory, key);
+        if (entry.isDirectory()) {
+            return;
+        }
+        // The pom is not stored, it is the sanitized pom
+        List<org.apache.maven.artifact.Artifact> artifacts = new ArrayList<>();
+        List<org.apache.maven.artifact.Artifact> candidates = new ArrayList<>(project.getAttachedArtifacts());
+        candidates.add(0, project.getArtifact());
+        for (org.apache.maven.artifact.Artifact artifact : candidates) {
+            if (artifact != null && artifact.getFile() != null && artifact.getFile().isFile()
+                && !"pom".equals(artifact.getArtifactHandler().getExtension())) {
+                artifacts.add(artifact);
+            }
+        }
+        if (artifacts.isEmpty()) {
+            return;
+        }
+
+        File tmp = new File(directory, key + "." + UUID.randomUUID() + ".tmp");
+        try {
+            if (!tmp.mkdirs()) {
+                throw new IOException("Unable to create " + tmp.getAbsolutePath());
+            }
+            Properties properties = new Properties();
+            for (org.apache.maven.artifact.Artifact artifact : artifacts) {
+                String name = artifact.getFile().getName();
+                Files.copy(artifact.getFile().toPath(), new File(tmp, name).toPath());
+                String classifier = artifact.getClassifier() == null ? "" : artifact.getClassifier();
+                String extension = artifact.getArtifactHandler().getExtension();
+                properties.setProperty(name, artifact.getGroupId() + ":" + artifact.getArtifactId() + ":"
+                    + extension + ":" + classifier + ":" + artifact.getVersion());
+            }
+            try (OutputStream out = new FileOutputStream(new File(tmp, INDEX))) {
+                properties.store(out, "Sanitized build " + project.getId());
+            }
+            Files.move(tmp.toPath(), entry.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            log.debug("Build stored in the cache " + entry.getAbsolutePath());
+        } catch (IOException e) {
+            // Another build may have stored the same entry concurrently
+            log.debug("Unable to store the build in the cache " + entry.getAbsolutePath(), e);
+        } finally {
+            delete(tmp);
+        }
+    }
+
+    private void link(Path source, Path target) throws IOException {
+        Files.deleteIfExists(target);
+        if (links) {
+            try {
+                Files.createLink(target, source);
+                return;
+            } catch (IOException | UnsupportedOperationException e) {
+                // Not on the same file system
+                log.debug("Unable to link " + source + ", copying it", e);
+            }
+        }
+        Files.copy(source, target);
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        if (file.exists() && !file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+}
@@ -1,41 +1,378 @@
 package me.escoffier.maven;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.maven.RepositoryUtils;
+import org.apache.maven.execution.BuildSuccess;
+import org.apache.maven.model.Dependency;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.ArtifactTypeRegistry;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.collection.CollectRequest;
+import org.eclipse.aether.installation.InstallRequest;
+import org.eclipse.aether.installation.InstallationException;
+import org.eclipse.aether.resolution.ArtifactResult;
+import org.eclipse.aether.resolution.DependencyRequest;
+import org.eclipse.aether.resolution.DependencyResolutionException;
 
-import java.util.Properties;
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
+ * Builds the sanitized pom of the project. Several sanitized poms (the variants declared by the configuration, the
+ * {@code sanitizer.poms} or the configured {@code builds}) are built concurrently, each one in its own nested
+ * session and its own build directory, named after the build id in {@code ${project.build.directory}/sanitized}. The
+ * builds executing mojos not marked thread-safe are not run concurrently with the other builds. The results of all
+ * the builds are reported in a single summary.
+ *
  * @author <a href="http://escoffier.me">Clement Escoffier</a>
  */
-@Mojo(name = "build-with-sanitized-pom")
+@Mojo(name = "build-with-sanitized-pom", threadSafe = true)
 public class BuildMojo extends AbstractSanitizerMojo {
 
+    private static final String GOAL = "build-with-sanitized-pom";
+
+    /**
+     * The phases whose outputs can be restored from the build cache: they only produce the artifacts in the build
+     * directory and, for {@code install}, in the local repository.
+     */
+    private static final List<String> CACHEABLE_PHASES = Arrays.asList("package", "verify", "install");
+
     @Parameter(property = "sanitizer.phase")
     private String phase;
 
+    /**
+     * The configuration declaring the variants, built when neither {@code builds} nor {@code sanitizer.poms} is set.
+     */
+    @Parameter(property = "sanitizer.config")
+    private File config;
+
+    /**
+     * The sanitized poms to build, such as the poms of several variants or modules.
+     */
+    @Parameter(property = "sanitizer.poms")
+    private List<File> poms;
+
+    /**
+     * The sanitized poms to build, with their own user properties. Takes precedence over {@code sanitizer.poms}.
+     */
+    @Parameter
+    private List<SanitizedBuild> builds;
+
+    /**
+     * The number of sanitized poms built concurrently, the number of available processors if not set.
+     */
+    @Parameter(property = "sanitizer.buildThreads", defaultValue = "0")
+    private int buildThreads;
+
+    /**
+     * Whether the artifacts of a previous build of the same sanitized pom, dependencies, sources and resources (and
+     * tests, when they are executed) are restored instead of building them again. Only used for the
+     * {@code package}, {@code verify} and {@code install} phases. Disabled by default, as the environment variables,
+     * the system properties and the plugins are not part of the key.
+     */
+    @Parameter(property = "sanitizer.buildCache", defaultValue = "false")
+    private boolean buildCache;
+
+    /**
+     * The directory of the build cache, {@code .cache/vertx-artifact-sanitizer/builds} in the local repository if
+     * not set.
+     */
+    @Parameter(property = "sanitizer.buildCacheDirectory")
+    private File buildCacheDirectory;
+
+    /**
+     * Whether the artifacts are restored from the build cache as hard links instead of copies.
+     */
+    @Parameter(property = "sanitizer.buildCacheLinks", defaultValue = "false")
+    private boolean buildCacheLinks;
+
     @Override
     public void execute() throws MojoExecutionException, MojoFailureException {
-        if (phase == null) {
-            phase = "install";
+        // The parameters are not modified, the mojo can be executed concurrently
+        String phase = this.phase == null ? "install" : this.phase;
+        List<SanitizedBuild> requested = getRequestedBuilds();
+
+        Metrics metrics = createMetrics(project, GOAL);
+        try {
+            if (requested == null) {
+                if (!pom.exists()) {
+                    throw new MojoExecutionException("Unable to find the given pom file: " + pom.getAbsolutePath());
+                }
+                MavenBuildExecutor executor = createBuildExecutor(metrics);
+                Properties props = prepareBuild(Collections.singletonList(project), executor);
+                build(executor, executor.load(pom, props, null), phase, props, null, metrics);
+            } else {
+                buildConcurrently(requested, phase, metrics);
+            }
+        } finally {
+            writeReport(project, GOAL, metrics);
+        }
+    }
+
+    /**
+     * @return the builds of the {@code builds}, {@code sanitizer.poms} or variants, {@code null} to build the
+     * sanitized pom of the project in its build directory
+     */
+    private List<SanitizedBuild> getRequestedBuilds() throws MojoExecutionException {
+        List<SanitizedBuild> list = new ArrayList<>();
+        if (builds != null && !builds.isEmpty()) {
+            list.addAll(builds);
+        } else if (poms != null && !poms.isEmpty()) {
+            for (File file : poms) {
+                list.add(new SanitizedBuild().setPom(file));
+            }
+        } else {
+            ParsedConfiguration parsed = ConfigurationLoader.get(repoSession,
+                ConfigurationLoader.locate(config, project), getLog());
+            if (parsed.getVariants().isEmpty()) {
+                return null;
+            }
+            for (String variant : parsed.getVariants().keySet()) {
+                list.add(new SanitizedBuild().setId(variant).setPom(getVariantPom(variant)));
+            }
+        }
+
+        // The builds are copied, the configured ones are not modified
+        List<SanitizedBuild> resolved = new ArrayList<>();
+        Set<String> ids = new HashSet<>();
+        for (SanitizedBuild build : list) {
+            File file = build.getPom();
+            if (file == null) {
+                throw new MojoExecutionException("The pom of the build " + build.getId() + " is not set");
+            }
+            if (!file.isAbsolute()) {
+                file = new File(project.getBasedir(), file.getPath());
+            }
+            String id = build.getId();
+            if (id == null) {
+                String name = file.getName();
+                id = name.indexOf('.') == -1 ? name : name.substring(0, name.indexOf('.'));
+            }
+            if (!ids.add(id)) {
+                throw new MojoExecutionException("Several builds are identified by " + id + ", set their id");
+            }
+            resolved.add(new SanitizedBuild().setId(id).setPom(file).setProperties(build.getProperties()));
+        }
+        return resolved;
+    }
+
+    private void buildConcurrently(List<SanitizedBuild> requested, String phase, Metrics metrics)
+        throws MojoExecutionException {
+        for (SanitizedBuild build : requested) {
+            if (!build.getPom().isFile()) {
+                throw new MojoExecutionException("Unable to find the pom file of " + build.getId() + ": "
+                    + build.getPom().getAbsolutePath());
+            }
         }
+        if (reuseOutputs) {
+            getLog().warn("The original build outputs are not reused when the sanitized poms are built in their own "
+                + "build directory");
+        }
+        Properties common = getBuildProperties();
+
+        int size = Math.min(buildThreads > 0 ? buildThreads : Runtime.getRuntime().availableProcessors(),
+            requested.size());
+        ExecutorService pool = Executors.newFixedThreadPool(size,
+            new ThreadFactoryBuilder().setNameFormat("sanitizer-build-%d").setDaemon(true).build());
+        // The builds executing mojos not marked thread-safe hold the write lock, so they run alone
+        ReadWriteLock lock = new ReentrantReadWriteLock(true);
+        Map<SanitizedBuild, Future<String>> results = new LinkedHashMap<>();
+        Map<SanitizedBuild, Long> durations = new ConcurrentHashMap<>();
+        try {
+            for (SanitizedBuild build : requested) {
+                Properties props = new Properties();
+                props.putAll(common);
+                if (build.getProperties() != null) {
+                    props.putAll(build.getProperties());
+                }
+                File directory = new File(project.getBuild().getDirectory(), "sanitized/" + build.getId());
+                results.put(build, pool.submit(() -> {
+                    MavenBuildExecutor executor = createBuildExecutor(metrics);
+                    // The project is loaded once, for the execution plan, the build cache key and the build
+                    MavenProject sanitized = executor.load(build.getPom(), props, directory);
+                    Lock held = lock.readLock();
+                    if (size > 1) {
+                        List<String> mojos = executor.getNotThreadSafeMojos(sanitized, phase, props);
+                        if (!mojos.isEmpty()) {
+                            getLog().warn("The sanitized build " + build.getId() + " executes mojos not marked "
+                                + "thread-safe, it is not run concurrently with the other builds: " + mojos);
+                            held = lock.writeLock();
+                        }
+                    }
+                    held.lock();
+                    long begin = System.nanoTime();
+                    try {
+                        return build(executor, sanitized, phase, props, directory, metrics) ? "RESTORED" : "SUCCESS";
+                    } finally {
+                        held.unlock();
+                        durations.put(build, System.nanoTime() - begin);
+                    }
+                }));
+            }
+
+            List<String> failures = new ArrayList<>();
+            Map<SanitizedBuild, String> statuses = new LinkedHashMap<>();
+            for (Map.Entry<SanitizedBuild, Future<String>> entry : results.entrySet()) {
+                try {
+                    statuses.put(entry.getKey(), entry.getValue().get());
+                } catch (ExecutionException e) {
+                    getLog().error("The sanitized build " + entry.getKey().getId() + " failed", e.getCause());
+                    statuses.put(entry.getKey(), "FAILURE");
+                    failures.add(entry.getKey().getId());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new MojoExecutionException("Interrupted while building the sanitized poms", e);
+                }
+            }
+
+            getLog().info("Sanitized builds:");
+            for (Map.Entry<SanitizedBuild, String> entry : statuses.entrySet()) {
+                SanitizedBuild build = entry.getKey();
+                Long duration = durations.get(build);
+                getLog().info(String.format("  %-30s %-8s [%.3f s] %s", build.getId(), entry.getValue(),
+                    duration == null ? 0 : duration / (double) TimeUnit.SECONDS.toNanos(1),
+                    build.getPom().getName()));
+            }
+            if (!failures.isEmpty()) {
+                throw new MojoExecutionException("The sanitized builds " + failures + " failed");
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Builds a sanitized pom, or restores its artifacts from the build cache.
+     *
+     * @param executor  the executor of the nested build
+     * @param sanitized the project of the sanitized pom, loaded by the executor
+     * @param directory the build directory, {@code null} to use the one of the pom
+     * @return {@code true} if the artifacts have been restored from the cache
+     */
+    private boolean build(MavenBuildExecutor executor, MavenProject sanitized, String phase, Properties props,
+                          File directory, Metrics metrics) throws MojoExecutionException {
+        File file = sanitized.getFile();
+        BuildCache cache = null;
+        String key = null;
+        // The key is computed from the sources of the project, the poms of the other projects are not cached
+        if (buildCache && CACHEABLE_PHASES.contains(phase)
+            && file.getAbsoluteFile().getParentFile().equals(project.getBasedir().getAbsoluteFile())) {
+            try (Metrics.Phase ignored = metrics.start("build-cache-key")) {
+                List<Artifact> dependencies = resolveDependencies(sanitized);
+                if (dependencies != null) {
+                    cache = createBuildCache();
+                    // The nested build gets the user properties of the session, and its active profiles
+                    Properties user = new Properties();
+                    user.putAll(session.getUserProperties());
+                    user.putAll(props);
+                    key = cache.computeKey(file, project, phase, user, session.getRequest().getActiveProfiles(),
+                        session.getRequest().getInactiveProfiles(), dependencies);
+                }
+            } catch (IOException e) {
+                throw new MojoExecutionException("Unable to compute the build cache key", e);
+            }
+            File target = directory == null ? new File(project.getBuild().getDirectory()) : directory;
+            if (cache != null && restore(cache, key, file, target, phase, metrics)) {
+                return true;
+            }
+        }
+
+        executor.build(Collections.singletonList(sanitized), phase, props);
+        if (cache != null && session.getResult().getBuildSummary(sanitized) instanceof BuildSuccess) {
+            try (Metrics.Phase ignored = metrics.start("build-cache-store")) {
+                cache.store(key, sanitized);
+            }
+        }
+        return false;
+    }
 
-        if (!pom.exists()) {
-            throw new MojoExecutionException("Unable to find the given pom file: " + pom.getAbsolutePath());
+    /**
+     * Resolves the dependencies of a sanitized pom, they are part of the build cache key.
+     *
+     * @return the resolved dependencies, {@code null} if they cannot be resolved, the build then reports the error
+     */
+    private List<Artifact> resolveDependencies(MavenProject sanitized) {
+        ArtifactTypeRegistry types = repoSession.getArtifactTypeRegistry();
+        CollectRequest request = new CollectRequest();
+        request.setRootArtifact(RepositoryUtils.toArtifact(sanitized.getArtifact()));
+        request.setRepositories(sanitized.getRemoteProjectRepositories());
+        for (Dependency dependency : sanitized.getDependencies()) {
+            request.addDependency(RepositoryUtils.toDependency(dependency, types));
+        }
+        if (sanitized.getDependencyManagement() != null) {
+            for (Dependency dependency : sanitized.getDependencyManagement().getDependencies()) {
+                request.addManagedDependency(RepositoryUtils.toDependency(dependency, types));
+            }
         }
+        try {
+            List<Artifact> dependencies = new ArrayList<>();
+            for (ArtifactResult result : repositorySystem.resolveDependencies(repoSession,
+                new DependencyRequest(request, null)).getArtifactResults()) {
+                dependencies.add(result.getArtifact());
+            }
+            return dependencies;
+        } catch (DependencyResolutionException e) {
+            getLog().warn("Unable to resolve the dependencies of " + sanitized.getFile().getAbsolutePath()
+                + ", the build cache is not used: " + e.getMessage());
+            return null;
+        }
+    }
 
-        Properties props = new Properties();
-        props.put("skipTests", "true");
+    private BuildCache createBuildCache() {
+        File directory = buildCacheDirectory;
+        if (directory == null) {
+            directory = new File(repoSession.getLocalRepository().getBasedir(),
+                ".cache/vertx-artifact-sanitizer/builds");
+        }
+        return new BuildCache(directory, buildCacheLinks, getLog());
+    }
 
-        new MavenBuildExecutor()
-            .setContainer(container)
-            .setExecutor(lifecycleExecutor)
-            .setLog(getLog())
-            .setProjectBuilder(projectBuilder)
-            .setRepoSession(repoSession)
-            .setSession(session)
-            .execute(pom, phase, props);
+    /**
+     * Restores the artifacts of a previous build in the build directory, and installs them with the sanitized pom
+     * if the phase is {@code install}.
+     *
+     * @return {@code true} if the artifacts have been restored
+     */
+    private boolean restore(BuildCache cache, String key, File file, File target, String phase, Metrics metrics)
+        throws MojoExecutionException {
+        try (Metrics.Phase restoring = metrics.start("build-cache-restore")) {
+            List<Artifact> artifacts;
+            try {
+                artifacts = cache.restore(key, target);
+            } catch (IOException e) {
+                getLog().warn("Unable to restore the build " + key + " from the cache, building", e);
+                return false;
+            }
+            if (artifacts == null || artifacts.isEmpty()) {
+                getLog().debug("Build " + key + " not found in the cache");
+                return false;
+            }
+            restoring.count("artifacts", artifacts.size());
+
+            if ("install".equals(phase)) {
+                Artifact main = artifacts.get(0);
+                InstallRequest request = new InstallRequest().setArtifacts(new ArrayList<>(artifacts))
+                    .addArtifact(new DefaultArtifact(main.getGroupId(), main.getArtifactId(), "pom",
+                        main.getVersion()).setFile(file));
+                try {
+                    repositorySystem.install(repoSession, request);
+                } catch (InstallationException e) {
+                    throw new MojoExecutionException("Unable to install the artifacts restored from the cache", e);
+                }
+            }
+            getLog().info("Sanitized build restored from the cache (" + artifacts.size() + " artifact(s), key "
+                + key + ")");
+            return true;
+        }
     }
 }
@@ -0,0 +1,52 @@
+package me.escoffier.maven;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Builds the sanitized poms of all the projects of the reactor in a single nested session. The nested session has
+ * its own dependency graph, so the sanitized projects can be built in parallel (-T).
+ *
+ * @author <a href="http://escoffier.me">Clement Escoffier</a>
+ */
+@Mojo(name = "build-with-sanitized-poms", aggregator = true, threadSafe = true)
+public class BuildReactorMojo extends AbstractSanitizerMojo {
+
+    @Parameter(property = "sanitizer.phase", defaultValue = "install")
+    private String phase;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        List<File> poms = new ArrayList<>();
+        List<MavenProject> modules = new ArrayList<>();
+        for (MavenProject module : session.getProjects()) {
+            File file = new File(module.getBasedir(), pom.getName());
+            if (file.isFile()) {
+                poms.add(file);
+                modules.add(module);
+            } else {
+                getLog().warn("No sanitized pom for " + module.getId() + ", skipping");
+            }
+        }
+        if (poms.isEmpty()) {
+            throw new MojoExecutionException("Unable to find any sanitized pom file named " + pom.getName());
+        }
+
+        Metrics metrics = createMetrics(project, "build-with-sanitized-poms");
+        try {
+            MavenBuildExecutor executor = createBuildExecutor(metrics);
+            Properties props = prepareBuild(modules, executor);
+            executor.execute(poms, phase, props);
+        } finally {
+            writeReport(project, "build-with-sanitized-poms", metrics);
+        }
+    }
+}
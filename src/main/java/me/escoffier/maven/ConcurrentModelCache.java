@@ -0,0 +1,31 @@
+package me.escoffier.maven;
+
+import org.apache.maven.model.building.ModelCache;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A model cache that can be shared by model building requests executed concurrently, so parent and imported poms
+ * are only read and processed once per reactor.
+ *
+ * @author <a href="http://escoffier.me">Clement Escoffier</a>
+ */
+public class ConcurrentModelCache implements ModelCache {
+
+    private final Map<String, Object> cache = new ConcurrentHashMap<>();
+
+    @Override
+    public void put(String groupId, String artifactId, String version, String tag, Object data) {
+        cache.put(key(groupId, artifactId, version, tag), data);
+    }
+
+    @Override
+    public Object get(String groupId, String artifactId, String version, String tag) {
+        return cache.get(key(groupId, artifactId, version, tag));
+    }
+
+    private static String key(String groupId, String artifactId, String version, String tag) {
+        return groupId + ':' + artifactId + ':' + version + ':' + tag;
+    }
+}
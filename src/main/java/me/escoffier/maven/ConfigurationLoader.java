@@ -0,0 +1,153 @@
+package me.escoffier.maven;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.SessionData;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reads the sanitizer configuration and resolves it against a project. Parsed configurations are cached in the
+ * repository session, so each file is only read, parsed and validated once per Maven session.
+ *
+ * @author <a href="http://escoffier.me">Clement Escoffier</a>
+ */
+public class ConfigurationLoader {
+
+    private static final String CACHE_KEY = ConfigurationLoader.class.getName() + ".cache";
+
+    private static final String DEFAULT_CONFIGURATION = "default-configuration.yml";
+
+    /**
+     * Locates the configuration file of a project.
+     *
+     * @param config  the configured file, {@code null} if not set
+     * @param project the project
+     * @return the configuration file, it may not exist
+     */
+    static File locate(File config, MavenProject project) {
+        if (config == null) {
+            return new File(project.getBasedir(), "sanitizer-config.yml");
+        }
+        return config;
+    }
+
+    /**
+     * Gets the parsed content of the configuration file, or of the default configuration if the file does not
+     * exist. The file is only parsed again if its modification date or size changed.
+     *
+     * @param repoSession the repository session holding the cache, may be {@code null}
+     * @param config      the configuration file
+     * @param log         the logger
+     * @return the parsed configuration
+     * @throws MojoExecutionException if the configuration cannot be read or is invalid
+     */
+    static ParsedConfiguration get(RepositorySystemSession repoSession, File config, Log log)
+        throws MojoExecutionException {
+        Map<String, Entry> cache = getCache(repoSession);
+        String key = config.isFile() ? config.getAbsolutePath() : DEFAULT_CONFIGURATION;
+        String stamp = config.isFile() ? config.lastModified() + ":" + config.length() : "";
+
+        synchronized (cache) {
+            Entry entry = cache.get(key);
+            if (entry == null || !entry.stamp.equals(stamp)) {
+                try {
+                    entry = new Entry(stamp, parse(config, key, log), null);
+                } catch (MojoExecutionException e) {
+                    cache.put(key, new Entry(stamp, null, e.getMessage()));
+                    throw e;
+                }
+                cache.put(key, entry);
+            } else if (entry.error != null) {
+                // The details have already been reported
+                throw new MojoExecutionException("Invalid configuration " + key + ", see previous errors");
+            }
+            return entry.configuration;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Entry> getCache(RepositorySystemSession repoSession) {
+        if (repoSession == null) {
+            return new ConcurrentHashMap<>();
+        }
+        SessionData data = repoSession.getData();
+        Object cache = data.get(CACHE_KEY);
+        if (cache == null) {
+            data.set(CACHE_KEY, null, new ConcurrentHashMap<String, Entry>());
+            cache = data.get(CACHE_KEY);
+        }
+        return (Map<String, Entry>) cache;
+    }
+
+    private static ParsedConfiguration parse(File config, String key, Log log) throws MojoExecutionException {
+        ParsedConfiguration configuration = ParsedConfiguration.parse(read(config, log), key);
+        for (String warning : configuration.getWarnings()) {
+            log.warn(warning);
+        }
+        return configuration;
+    }
+
+    private static String read(File config, Log log) throws MojoExecutionException {
+        if (config.isFile()) {
+            try {
+                return FileUtils.readFileToString(config, StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new MojoExecutionException("Unable to read the configuration file", e);
+            }
+        }
+
+        log.info("Using default configuration...");
+        URL url = ConfigurationLoader.class.getClassLoader().getResource(DEFAULT_CONFIGURATION);
+        if (url == null) {
+            throw new MojoExecutionException("Unable to find the default configuration file");
+        }
+        try {
+            return IOUtils.toString(url, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to read the configuration file", e);
+        }
+    }
+
+    /**
+     * Creates the configuration of a project, including the module name.
+     *
+     * @param parsed  the parsed configuration
+     * @param project the project
+     * @param module  the module name set by the user, {@code null} if not set
+     * @param log     the logger
+     * @return the configuration
+     */
+    static Configuration load(ParsedConfiguration parsed, MavenProject project, String module, Log log)
+        throws MojoExecutionException {
+        Configuration configuration = parsed.toConfiguration(project);
+        if (module != null) {
+            configuration.setModuleName(module);
+        } else if (configuration.getModuleName() == null) {
+            configuration.setModuleName(ModuleUtils.findModuleName(log, project));
+        }
+        log.info("Set module name to " + configuration.getModuleName());
+        return configuration;
+    }
+
+    private static final class Entry {
+        private final String stamp;
+        private final ParsedConfiguration configuration;
+        private final String error;
+
+        private Entry(String stamp, ParsedConfiguration configuration, String error) {
+            this.stamp = stamp;
+            this.configuration = configuration;
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package me.escoffier.maven;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Matches {@code groupId:artifactId} coordinates against a set of patterns. Exact coordinates are looked up in hash
+ * sets, patterns containing {@code *} are compiled into a single regular expression. {@code *} matches any sequence
+ * of characters within a segment, all the other characters, including {@code ?}, are matched literally. A pattern
+ * without {@code :} only matches the artifactId.
+ *
+ * @author <a href="http://escoffier.me">Clement Escoffier</a>
+ */
+public final class CoordinateMatcher {
+
+    private final Set<String> coordinates;
+    private final Set<String> artifactIds;
+    private final Pattern globs;
+
+    private CoordinateMatcher(Set<String> coordinates, Set<String> artifactIds, Pattern globs) {
+        this.coordinates = coordinates;
+        this.artifactIds = artifactIds;
+        this.globs = globs;
+    }
+
+    /**
+     * Compiles the given patterns.
+     *
+     * @param patterns the patterns, such as {@code io.vertx:vertx-lang-js}, {@code io.vertx:*},
+     *                 {@code *:vertx-lang-*} or {@code kotlin-maven-plugin}
+     * @return the matcher
+     * @throws IllegalArgumentException if a pattern is invalid
+     */
+    public static CoordinateMatcher compile(Collection<String> patterns) {
+        Set<String> coordinates = new HashSet<>();
+        Set<String> artifactIds = new HashSet<>();
+        StringJoiner regex = new StringJoiner("|");
+        for (String pattern : patterns) {
+            String p = pattern.trim();
+            String[] segments = p.split(":", -1);
+            if (p.isEmpty() || segments.length > 2) {
+                throw new IllegalArgumentException("Invalid pattern '" + pattern
+                    + "', expected groupId:artifactId or artifactId");
+            }
+            if (p.contains("*")) {
+                regex.add("(?:" + toRegex(segments.length == 1 ? "*:" + p : p) + ")");
+            } else if (segments.length == 1) {
+                artifactIds.add(p);
+            } else {
+                coordinates.add(p);
+            }
+        }
+        Pattern globs = regex.length() == 0 ? null : Pattern.compile(regex.toString());
+        return new CoordinateMatcher(Collections.unmodifiableSet(coordinates),
+            Collections.unmodifiableSet(artifactIds), globs);
+    }
+
+    private static String toRegex(String glob) {
+        StringBuilder builder = new StringBuilder();
+        int start = 0;
+        int index;
+        while ((index = glob.indexOf('*', start)) != -1) {
+            if (index > start) {
+                builder.append(Pattern.quote(glob.substring(start, index)));
+            }
+            builder.append("[^:]*");
+            start = index + 1;
+        }
+        if (start < glob.length()) {
+            builder.append(Pattern.quote(glob.substring(start)));
+        }
+        return builder.toString();
+    }
+
+    public boolean matches(String groupId, String artifactId) {
+        if (artifactIds.contains(artifactId)) {
+            return true;
+        }
+        String key = groupId + ":" + artifactId;
+        return coordinates.contains(key) || (globs != null && globs.matcher(key).matches());
+    }
+
+    /**
+     * @return the exact {@code groupId:artifactId} coordinates
+     */
+    public Set<String> getCoordinates() {
+        return coordinates;
+    }
+
+    public boolean isEmpty() {
+        return coordinates.isEmpty() && artifactIds.isEmpty() && globs == null;
+    }
+}
@@ -0,0 +1,147 @@
+package me.escoffier.maven;
+
+import org.apache.maven.RepositoryUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.SessionData;
+import org.eclipse.aether.artifact.ArtifactTypeRegistry;
+import org.eclipse.aether.collection.CollectRequest;
+import org.eclipse.aether.collection.DependencyCollectionException;
+import org.eclipse.aether.graph.Dependency;
+import org.eclipse.aether.graph.DependencyNode;
+import org.eclipse.aether.graph.Exclusion;
+import org.eclipse.aether.repository.RemoteRepository;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Finds the artifacts reachable from a dependency, by collecting its dependency graph with Aether. The graph is
+ * collected without conflict resolution, so every path to an artifact is considered. The reachable artifacts are
+ * cached in the repository session, so a dependency shared by several projects of the reactor is only collected
+ * once.
+ *
+ * @author <a href="http://escoffier.me">Clement Escoffier</a>
+ */
+public class DependencyGraphAnalyzer {
+
+    private static final String CACHE_KEY = DependencyGraphAnalyzer.class.getName() + ".cache";
+
+    private RepositorySystemSession repoSession;
+    private RepositorySystem repositorySystem;
+    private List<RemoteRepository> repositories;
+    private Log log;
+
+    private RepositorySystemSession collectSession;
+
+    public DependencyGraphAnalyzer setRepoSession(RepositorySystemSession repoSession) {
+        this.repoSession = repoSession;
+        // Keep all the paths, the exclusions must cut every path to the excluded artifacts
+        DefaultRepositorySystemSession session = new DefaultRepositorySystemSession(repoSession);
+        session.setDependencyGraphTransformer(null);
+        this.collectSession = session;
+        return this;
+    }
+
+    public DependencyGraphAnalyzer setRepositorySystem(RepositorySystem repositorySystem) {
+        this.repositorySystem = repositorySystem;
+        return this;
+    }
+
+    public DependencyGraphAnalyzer setRepositories(List<RemoteRepository> repositories) {
+        this.repositories = repositories;
+        return this;
+    }
+
+    public DependencyGraphAnalyzer setLog(Log log) {
+        this.log = log;
+        return this;
+    }
+
+    /**
+     * Gets the {@code groupId:artifactId} of the artifacts transitively reachable from a dependency.
+     *
+     * @param dependency the dependency
+     * @param managed    the managed dependencies of the project
+     * @return the reachable artifacts, excluding the dependency itself
+     * @throws MojoExecutionException if the graph cannot be collected
+     */
+    public Set<String> getReachableArtifacts(org.apache.maven.model.Dependency dependency,
+                                             List<org.apache.maven.model.Dependency> managed)
+        throws MojoExecutionException {
+        ArtifactTypeRegistry types = repoSession.getArtifactTypeRegistry();
+        Dependency root = RepositoryUtils.toDependency(dependency, types);
+        List<Dependency> management = new ArrayList<>();
+        for (org.apache.maven.model.Dependency dep : managed) {
+            management.add(RepositoryUtils.toDependency(dep, types));
+        }
+
+        String key = key(root, management);
+        Map<String, Set<String>> cache = getCache();
+        Set<String> reachable = cache.get(key);
+        if (reachable != null) {
+            return reachable;
+        }
+
+        CollectRequest request = new CollectRequest(root, repositories);
+        request.setManagedDependencies(management);
+        request.setRequestContext("sanitizer");
+        DependencyNode node;
+        try {
+            node = repositorySystem.collectDependencies(collectSession, request).getRoot();
+        } catch (DependencyCollectionException e) {
+            throw new MojoExecutionException("Unable to collect the dependencies of " + root.getArtifact(), e);
+        }
+        reachable = new TreeSet<>();
+        Set<DependencyNode> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (DependencyNode child : node.getChildren()) {
+            visit(child, reachable, visited);
+        }
+        log.debug(root.getArtifact() + " reaches " + reachable.size() + " artifact(s)");
+        reachable = Collections.unmodifiableSet(reachable);
+        cache.put(key, reachable);
+        return reachable;
+    }
+
+    private static void visit(DependencyNode node, Set<String> reachable, Set<DependencyNode> visited) {
+        // Nodes can be shared in the collected graph
+        if (!visited.add(node)) {
+            return;
+        }
+        if (node.getArtifact() != null) {
+            reachable.add(node.getArtifact().getGroupId() + ":" + node.getArtifact().getArtifactId());
+        }
+        for (DependencyNode child : node.getChildren()) {
+            visit(child, reachable, visited);
+        }
+    }
+
+    private static String key(Dependency root, List<Dependency> management) {
+        StringBuilder builder = new StringBuilder(root.getArtifact().toString());
+        for (Exclusion exclusion : root.getExclusions()) {
+            builder.append("!").append(exclusion.getGroupId()).append(':').append(exclusion.getArtifactId());
+        }
+        StringBuilder managed = new StringBuilder();
+        for (Dependency dependency : management) {
+            managed.append(dependency.getArtifact()).append(';');
+        }
+        // The managed dependencies are shared by many keys, only keep their hash
+        builder.append('|').append(Fingerprint.hash(managed.toString().getBytes(StandardCharsets.UTF_8)));
+        return builder.toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Set<String>> getCache() {
+        SessionData data = repoSession.getData();
+        Object cache = data.get(CACHE_KEY);
+        if (cache == null) {
+            data.set(CACHE_KEY, null, new ConcurrentHashMap<String, Set<String>>());
+            cache = data.get(CACHE_KEY);
+        }
+        return (Map<String, Set<String>>) cache;
+    }
+}
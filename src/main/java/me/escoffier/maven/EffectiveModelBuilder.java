@@ -0,0 +1,258 @@
+package me.escoffier.maven;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Parent;
+import org.apache.maven.model.building.*;
+import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
+import org.apache.maven.model.io.xpp3.MavenXpp3Writer;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResolutionException;
+
+import java.io.*;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Builds the effective model of an in-memory (patched) raw model, without writing it to disk first. The pom file is
+ * only used to compute the project directory (relative parent lookup, path alignment, file-based profile
+ * activation), the content is taken from the given model.
+ *
+ * @author <a href="http://escoffier.me">Clement Escoffier</a>
+ */
+public class EffectiveModelBuilder {
+
+    private static final Pattern EXPRESSION = Pattern.compile("\\$\\{([^}]+)\\}");
+
+    private MavenSession session;
+    private RepositorySystemSession repoSession;
+    private RepositorySystem repositorySystem;
+    private ModelBuilder modelBuilder;
+    private List<RemoteRepository> repositories;
+    private ModelCache modelCache;
+    private boolean lightweight;
+    private Log log;
+
+    public EffectiveModelBuilder setSession(MavenSession session) {
+        this.session = session;
+        return this;
+    }
+
+    public EffectiveModelBuilder setRepoSession(RepositorySystemSession repoSession) {
+        this.repoSession = repoSession;
+        return this;
+    }
+
+    public EffectiveModelBuilder setRepositorySystem(RepositorySystem repositorySystem) {
+        this.repositorySystem = repositorySystem;
+        return this;
+    }
+
+    public EffectiveModelBuilder setModelBuilder(ModelBuilder modelBuilder) {
+        this.modelBuilder = modelBuilder;
+        return this;
+    }
+
+    public EffectiveModelBuilder setRepositories(List<RemoteRepository> repositories) {
+        this.repositories = repositories;
+        return this;
+    }
+
+    /**
+     * @param modelCache the cache of parent and imported models, shared between the builds
+     */
+    public EffectiveModelBuilder setModelCache(ModelCache modelCache) {
+        this.modelCache = modelCache;
+        return this;
+    }
+
+    /**
+     * @param lightweight whether the model is built without processing the plugins (lifecycle bindings,
+     *                    configuration expansion), with the minimal validation, and resolving the parent and
+     *                    imported poms from the local repository only
+     */
+    public EffectiveModelBuilder setLightweight(boolean lightweight) {
+        this.lightweight = lightweight;
+        return this;
+    }
+
+    public EffectiveModelBuilder setLog(Log log) {
+        this.log = log;
+        return this;
+    }
+
+    public Model build(File pomFile, Model rawModel) throws MojoExecutionException {
+        DefaultModelBuildingRequest request = new DefaultModelBuildingRequest();
+        request.setPomFile(pomFile);
+        request.setModelSource(toModelSource(pomFile, rawModel));
+        if (lightweight) {
+            request.setValidationLevel(ModelBuildingRequest.VALIDATION_LEVEL_MINIMAL);
+            request.setProcessPlugins(false);
+        } else {
+            // Same settings as the default project building request
+            request.setValidationLevel(ModelBuildingRequest.VALIDATION_LEVEL_STRICT);
+            request.setProcessPlugins(true);
+        }
+        request.setUserProperties(session.getUserProperties());
+        request.setSystemProperties(session.getSystemProperties());
+        request.setProfiles(session.getRequest().getProfiles());
+        request.setActiveProfileIds(session.getRequest().getActiveProfiles());
+        request.setInactiveProfileIds(session.getRequest().getInactiveProfiles());
+        request.setBuildStartTime(session.getRequest().getStartTime());
+        request.setModelResolver(new RepositoryModelResolver(repositorySystem, getResolutionSession(), repositories));
+        request.setModelCache(modelCache);
+
+        try {
+            ModelBuildingResult result = modelBuilder.build(request);
+            for (ModelProblem problem : result.getProblems()) {
+                log.debug(problem.toString());
+            }
+            return result.getEffectiveModel();
+        } catch (ModelBuildingException e) {
+            throw new MojoExecutionException("Unable to build the effective model of " + pomFile.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Resolves the poms imported (scope {@code import}) in the dependency management of the given raw models, and
+     * recursively the poms imported by them and their parents. The coordinates are interpolated with the given
+     * properties, the ones of an imported pom with its own properties. The poms are resolved as they are when
+     * building the effective model, so an updated snapshot is downloaded again.
+     *
+     * @param models       the raw models declaring the imports, the project and its parents
+     * @param properties   the properties interpolating the coordinates of the imports
+     * @param repositories the repositories of the project, the ones of the builder if {@code null}
+     * @return the resolved poms indexed by coordinates, {@code null} for the poms that cannot be resolved
+     */
+    public Map<String, File> resolveImports(List<Model> models, Map<String, String> properties,
+                                            List<RemoteRepository> repositories) {
+        Map<String, File> poms = new TreeMap<>();
+        collectImports(models, properties, repositories == null ? this.repositories : repositories, poms,
+            new HashMap<>());
+        return poms;
+    }
+
+    private void collectImports(List<Model> models, Map<String, String> properties,
+                                List<RemoteRepository> repositories, Map<String, File> poms, Map<String, Model> read) {
+        for (Model model : models) {
+            if (model.getDependencyManagement() == null) {
+                continue;
+            }
+            for (Dependency dependency : model.getDependencyManagement().getDependencies()) {
+                if (!"import".equals(dependency.getScope()) || !"pom".equals(dependency.getType())) {
+                    continue;
+                }
+                String groupId = interpolate(dependency.getGroupId(), properties);
+                String artifactId = interpolate(dependency.getArtifactId(), properties);
+                String version = interpolate(dependency.getVersion(), properties);
+                if (poms.containsKey(groupId + ":" + artifactId + ":" + version)) {
+                    continue;
+                }
+
+                // The imported pom and its parents, with their properties, the closest pom winning
+                List<Model> chain = new ArrayList<>();
+                Model imported = readPom(groupId, artifactId, version, repositories, poms, read);
+                while (imported != null) {
+                    chain.add(imported);
+                    Parent parent = imported.getParent();
+                    imported = parent == null ? null : readPom(parent.getGroupId(), parent.getArtifactId(),
+                        parent.getVersion(), repositories, poms, read);
+                }
+                if (chain.isEmpty()) {
+                    continue;
+                }
+                Map<String, String> inherited = new HashMap<>();
+                for (int i = chain.size() - 1; i >= 0; i--) {
+                    for (String name : chain.get(i).getProperties().stringPropertyNames()) {
+                        inherited.put(name, chain.get(i).getProperties().getProperty(name));
+                    }
+                }
+                inherited.put("project.groupId", groupId);
+                inherited.put("project.artifactId", artifactId);
+                inherited.put("project.version", version);
+                for (String name : session.getUserProperties().stringPropertyNames()) {
+                    inherited.put(name, session.getUserProperties().getProperty(name));
+                }
+                collectImports(chain, inherited, repositories, poms, read);
+            }
+        }
+    }
+
+    /**
+     * Resolves and reads a pom, recording its file in {@code poms}.
+     *
+     * @return the model, {@code null} if the pom cannot be resolved or read
+     */
+    private Model readPom(String groupId, String artifactId, String version, List<RemoteRepository> repositories,
+                          Map<String, File> poms, Map<String, Model> read) {
+        String key = groupId + ":" + artifactId + ":" + version;
+        if (poms.containsKey(key)) {
+            return read.get(key);
+        }
+        File file = null;
+        try {
+            ArtifactRequest request = new ArtifactRequest(new DefaultArtifact(groupId, artifactId, "", "pom",
+                version), repositories, null);
+            file = repositorySystem.resolveArtifact(getResolutionSession(), request).getArtifact().getFile();
+        } catch (ArtifactResolutionException | IllegalArgumentException e) {
+            log.debug("Unable to resolve the imported pom " + key + ": " + e.getMessage());
+        }
+        poms.put(key, file);
+        if (file == null) {
+            return null;
+        }
+        try (InputStream in = new FileInputStream(file)) {
+            Model model = new MavenXpp3Reader().read(in, false);
+            read.put(key, model);
+            return model;
+        } catch (IOException | XmlPullParserException e) {
+            log.debug("Unable to read the imported pom " + file.getAbsolutePath() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static String interpolate(String value, Map<String, String> properties) {
+        if (value == null || !value.contains("${")) {
+            return value;
+        }
+        Matcher matcher = EXPRESSION.matcher(value);
+        StringBuffer buffer = new StringBuffer();
+        while (matcher.find()) {
+            String replacement = properties.get(matcher.group(1));
+            matcher.appendReplacement(buffer, Matcher.quoteReplacement(replacement == null ? matcher.group()
+                : replacement));
+        }
+        matcher.appendTail(buffer);
+        return buffer.toString();
+    }
+
+    private RepositorySystemSession getResolutionSession() {
+        if (!lightweight || repoSession.isOffline()) {
+            return repoSession;
+        }
+        // The repositories are kept, so the artifacts downloaded from them are still available
+        DefaultRepositorySystemSession offline = new DefaultRepositorySystemSession(repoSession);
+        offline.setOffline(true);
+        return offline;
+    }
+
+    private ModelSource toModelSource(File pomFile, Model rawModel) throws MojoExecutionException {
+        StringWriter writer = new StringWriter();
+        try {
+            new MavenXpp3Writer().write(writer, rawModel);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Cannot serialize the modified model", e);
+        }
+        return new StringModelSource(writer.getBuffer(), pomFile.getAbsolutePath());
+    }
+}
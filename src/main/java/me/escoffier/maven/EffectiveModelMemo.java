@@ -0,0 +1,38 @@
+package me.escoffier.maven;
+
+import org.apache.maven.model.Model;
+
+/**
+ * Keeps the last effective model computed by a {@link Sanitizer}, with the key of its inputs (the model patched by
+ * the phase A and the parent poms). When the inputs did not change, for instance when only the excluded plugins,
+ * resources or profiles of the configuration changed, the effective model is reused and only the phase B runs.
+ * Used by the goals sanitizing the same project repeatedly.
+ *
+ * @author <a href="http://escoffier.me">Clement Escoffier</a>
+ */
+public class EffectiveModelMemo {
+
+    private String key;
+    private Model model;
+
+    /**
+     * @param key the key of the inputs
+     * @return a copy of the effective model computed for this key, {@code null} if the inputs changed
+     */
+    public synchronized Model get(String key) {
+        if (model == null || !key.equals(this.key)) {
+            return null;
+        }
+        // The phase B modifies the model
+        return model.clone();
+    }
+
+    /**
+     * @param key   the key of the inputs
+     * @param model the effective model, copied
+     */
+    public synchronized void put(String key, Model model) {
+        this.key = key;
+        this.model = model.clone();
+    }
+}
@@ -0,0 +1,100 @@
+package me.escoffier.maven;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Records the hashes of the inputs and of the output of a sanitization, so an unchanged project can skip it.
+ * The manifest is a properties file containing one hash per input, plus the hash of the generated output.
+ *
+ * @author <a href="http://escoffier.me">Clement Escoffier</a>
+ */
+public class Fingerprint {
+
+    static final String OUTPUT = "output";
+
+    private final Map<String, String> entries = new TreeMap<>();
+
+    public Fingerprint add(String key, byte[] content) {
+        entries.put(key, hash(content));
+        return this;
+    }
+
+    public Fingerprint add(String key, String value) {
+        return add(key, value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public Fingerprint add(String key, File file) throws IOException {
+        if (file == null || !file.isFile()) {
+            entries.put(key, "missing");
+        } else {
+            entries.put(key, Files.hash(file, Hashing.sha256()).toString());
+        }
+        return this;
+    }
+
+    /**
+     * Checks whether the manifest has been written for the same inputs, and whether the output is still the one
+     * that was generated.
+     *
+     * @param manifest the manifest file
+     * @param output   the generated file
+     * @return {@code null} if up to date, the name of the first changed entry otherwise
+     * @throws IOException if the manifest or the output cannot be read
+     */
+    public String findChange(File manifest, File output) throws IOException {
+        if (!manifest.isFile()) {
+            return "manifest";
+        }
+        Properties recorded = new Properties();
+        try (InputStream in = new FileInputStream(manifest)) {
+            recorded.load(in);
+        }
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            if (!entry.getValue().equals(recorded.getProperty(entry.getKey()))) {
+                return entry.getKey();
+            }
+        }
+        if (recorded.size() != entries.size() + 1) {
+            return "inputs";
+        }
+        if (!output.isFile()
+            || !Objects.equals(Files.hash(output, Hashing.sha256()).toString(), recorded.getProperty(OUTPUT))) {
+            return OUTPUT;
+        }
+        return null;
+    }
+
+    /**
+     * Writes the manifest.
+     *
+     * @param manifest the manifest file
+     * @param output   the content of the generated file
+     * @throws IOException if the manifest cannot be written
+     */
+    public void write(File manifest, byte[] output) throws IOException {
+        Properties properties = new Properties();
+        properties.putAll(entries);
+        properties.put(OUTPUT, hash(output));
+        File dir = manifest.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Unable to create " + dir.getAbsolutePath());
+        }
+        try (OutputStream out = new FileOutputStream(manifest)) {
+            properties.store(out, "Sanitizer fingerprint");
+        }
+    }
+
+    static String hash(byte[] content) {
+        HashCode code = Hashing.sha256().hashBytes(content);
+        return code.toString();
+    }
+}
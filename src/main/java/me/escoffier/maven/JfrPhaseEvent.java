@@ -0,0 +1,135 @@
+package me.escoffier.maven;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Emits the phases recorded by {@link Metrics} as JFR events. The JFR classes are only loaded when JFR events are
+ * enabled and JFR is available. The event type is defined at runtime with {@code jdk.jfr.EventFactory}, through
+ * reflection, so the plugin still compiles on a Java 8 JDK without {@code jdk.jfr}.
+ *
+ * @author <a href="http://escoffier.me">Clement Escoffier</a>
+ */
+final class JfrPhaseEvent {
+
+    private static final int PROJECT = 0;
+    private static final int GOAL = 1;
+    private static final int PHASE = 2;
+    private static final int ALLOCATED = 3;
+
+    /**
+     * The factory of the events, {@code null} if JFR is not available.
+     */
+    private static final EventType TYPE = EventType.define();
+
+    private final Object event;
+
+    private JfrPhaseEvent(Object event) {
+        this.event = event;
+    }
+
+    static boolean isAvailable() {
+        return TYPE != null;
+    }
+
+    static JfrPhaseEvent begin(String project, String goal, String phase) {
+        Object event = TYPE.newEvent();
+        TYPE.set(event, PROJECT, project);
+        TYPE.set(event, GOAL, goal);
+        TYPE.set(event, PHASE, phase);
+        TYPE.invoke(TYPE.begin, event);
+        return new JfrPhaseEvent(event);
+    }
+
+    void end(long allocated) {
+        TYPE.set(event, ALLOCATED, allocated);
+        TYPE.invoke(TYPE.commit, event);
+    }
+
+    /**
+     * The {@code me.escoffier.maven.SanitizerPhase} event type, and the methods of {@code jdk.jfr.Event}.
+     */
+    private static final class EventType {
+
+        private final Object factory;
+        private final Method newEvent;
+        private final Method set;
+        private final Method begin;
+        private final Method commit;
+
+        private EventType(Object factory, Method newEvent, Method set, Method begin, Method commit) {
+            this.factory = factory;
+            this.newEvent = newEvent;
+            this.set = set;
+            this.begin = begin;
+            this.commit = commit;
+        }
+
+        /**
+         * @return the event type, {@code null} if JFR is not available
+         */
+        private static EventType define() {
+            try {
+                ClassLoader loader = JfrPhaseEvent.class.getClassLoader();
+                Class<?> event = Class.forName("jdk.jfr.Event", false, loader);
+                Class<?> factory = Class.forName("jdk.jfr.EventFactory", false, loader);
+                Class<?> annotation = Class.forName("jdk.jfr.AnnotationElement", false, loader);
+                Class<?> descriptor = Class.forName("jdk.jfr.ValueDescriptor", false, loader);
+                Constructor<?> element = annotation.getConstructor(Class.class, Object.class);
+                Constructor<?> field = descriptor.getConstructor(Class.class, String.class, List.class);
+
+                List<Object> annotations = Arrays.asList(
+                    element.newInstance(Class.forName("jdk.jfr.Name", false, loader),
+                        "me.escoffier.maven.SanitizerPhase"),
+                    element.newInstance(Class.forName("jdk.jfr.Label", false, loader), "Sanitizer Phase"),
+                    element.newInstance(Class.forName("jdk.jfr.Category", false, loader),
+                        new String[]{"Vert.x Artifact Sanitizer"}));
+                // In the order of the indexes
+                List<Object> fields = new ArrayList<>();
+                fields.add(field.newInstance(String.class, "project", label(element, loader, "Project")));
+                fields.add(field.newInstance(String.class, "goal", label(element, loader, "Goal")));
+                fields.add(field.newInstance(String.class, "phase", label(element, loader, "Phase")));
+                List<Object> allocated = new ArrayList<>(label(element, loader, "Allocated"));
+                allocated.add(element.newInstance(Class.forName("jdk.jfr.DataAmount", false, loader), "BYTES"));
+                fields.add(field.newInstance(long.class, "allocatedBytes", allocated));
+
+                Object instance = factory.getMethod("create", List.class, List.class)
+                    .invoke(null, annotations, fields);
+                return new EventType(instance, factory.getMethod("newEvent"),
+                    event.getMethod("set", int.class, Object.class), event.getMethod("begin"),
+                    event.getMethod("commit"));
+            } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+                return null;
+            }
+        }
+
+        private static List<Object> label(Constructor<?> element, ClassLoader loader, String label)
+            throws ReflectiveOperationException {
+            return Collections.singletonList(element.newInstance(Class.forName("jdk.jfr.Label", false, loader),
+                label));
+        }
+
+        private Object newEvent() {
+            return invoke(newEvent, factory);
+        }
+
+        private void set(Object event, int index, Object value) {
+            invoke(set, event, index, value);
+        }
+
+        private Object invoke(Method method, Object target, Object... args) {
+            try {
+                return method.invoke(target, args);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("Unable to emit the JFR event", e);
+            } catch (InvocationTargetException e) {
+                throw new IllegalStateException("Unable to emit the JFR event", e.getCause());
+            }
+        }
+    }
+}
@@ -1,18 +1,44 @@
 package me.escoffier.maven;
 
 import org.apache.maven.artifact.ArtifactUtils;
+import org.apache.maven.execution.BuildSummary;
 import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.DefaultMavenExecutionResult;
 import org.apache.maven.execution.MavenExecutionRequest;
+import org.apache.maven.execution.MavenExecutionResult;
 import org.apache.maven.execution.MavenSession;
 import org.apache.maven.execution.ProjectDependencyGraph;
 import org.apache.maven.lifecycle.LifecycleExecutor;
+import org.apache.maven.lifecycle.LifecycleNotFoundException;
+import org.apache.maven.lifecycle.LifecyclePhaseNotFoundException;
+import org.apache.maven.lifecycle.MavenExecutionPlan;
+import org.apache.maven.model.Build;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Reporting;
+import org.apache.maven.model.building.StringModelSource;
+import org.apache.maven.model.io.xpp3.MavenXpp3Writer;
+import org.apache.maven.plugin.InvalidPluginDescriptorException;
+import org.apache.maven.plugin.MojoExecution;
 import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoNotFoundException;
+import org.apache.maven.plugin.PluginDescriptorParsingException;
+import org.apache.maven.plugin.PluginManagerException;
+import org.apache.maven.plugin.PluginNotFoundException;
+import org.apache.maven.plugin.PluginResolutionException;
+import org.apache.maven.plugin.descriptor.MojoDescriptor;
 import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.prefix.NoPluginFoundForPrefixException;
+import org.apache.maven.plugin.version.PluginVersionResolutionException;
 import org.apache.maven.project.*;
 import org.codehaus.plexus.PlexusContainer;
+import org.codehaus.plexus.util.dag.CycleDetectedException;
+import org.eclipse.aether.DefaultRepositorySystemSession;
 import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.util.repository.ChainedWorkspaceReader;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
 import java.util.*;
 
 /**
@@ -27,6 +53,8 @@ public class MavenBuildExecutor {
     private RepositorySystemSession repoSession;
     private Log log;
     private ProjectBuilder projectBuilder;
+    private Metrics metrics = new Metrics(null, null, false);
+    private Map<File, File> outputDirectories = Collections.emptyMap();
 
     public MavenBuildExecutor setSession(MavenSession session) {
         this.session = session;
@@ -58,33 +86,246 @@ public class MavenBuildExecutor {
         return this;
     }
 
-    public void execute(File pom, String phase, Properties properties)
+    public MavenBuildExecutor setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    /**
+     * @param outputDirectories the output directories of the built projects, keyed by project directory, replacing
+     *                          the ones of their poms
+     */
+    public MavenBuildExecutor setOutputDirectories(Map<File, File> outputDirectories) {
+        this.outputDirectories = outputDirectories;
+        return this;
+    }
+
+    public MavenProject execute(File pom, String phase, Properties properties)
+        throws MojoExecutionException {
+        return execute(Collections.singletonList(pom), phase, properties).get(0);
+    }
+
+    /**
+     * Lists the mojos executed by the build of the given project that are not marked thread-safe. The nested builds
+     * share the JVM of the main build, so such a build must not run concurrently with the other nested builds.
+     *
+     * @param project    the project, loaded by {@link #load(File, Properties, File)}
+     * @param phase      the phase to execute
+     * @param properties the additional user properties
+     * @return the mojos not marked thread-safe, as {@code groupId:artifactId:version:goal}, empty if none
+     * @throws MojoExecutionException if the execution plan cannot be computed
+     */
+    public List<String> getNotThreadSafeMojos(MavenProject project, String phase, Properties properties)
         throws MojoExecutionException {
+        MavenSession newSession;
+        try {
+            newSession = getMavenSession(new ReactorDependencyGraph(Collections.singletonList(project)),
+                getMavenExecutionRequest(phase, properties));
+        } catch (CycleDetectedException | DuplicateProjectException e) {
+            throw new MojoExecutionException("Unable to sort the sanitized projects", e);
+        }
+        MavenExecutionPlan plan;
+        try {
+            plan = executor.calculateExecutionPlan(newSession, phase);
+        } catch (PluginNotFoundException | PluginResolutionException | PluginDescriptorParsingException
+            | MojoNotFoundException | NoPluginFoundForPrefixException | InvalidPluginDescriptorException
+            | PluginManagerException | LifecyclePhaseNotFoundException | LifecycleNotFoundException
+            | PluginVersionResolutionException e) {
+            throw new MojoExecutionException("Unable to compute the execution plan of " + project.getId(), e);
+        }
+        List<String> mojos = new ArrayList<>();
+        for (MojoExecution execution : plan.getMojoExecutions()) {
+            MojoDescriptor descriptor = execution.getMojoDescriptor();
+            if (!descriptor.isThreadSafe() && !mojos.contains(descriptor.getId())) {
+                mojos.add(descriptor.getId());
+            }
+        }
+        return mojos;
+    }
+
+    /**
+     * Loads the project of the given pom, to build it with {@link #build(List, String, Properties)}. With another
+     * build directory than the one of the pom, several poms sharing the same project directory, such as the variants
+     * of a project, can be built concurrently.
+     *
+     * @param pom        the pom file
+     * @param properties the additional user properties
+     * @param directory  the build directory, replacing the one of the pom, {@code null} to keep it
+     * @return the project
+     * @throws MojoExecutionException if the pom is invalid
+     */
+    public MavenProject load(File pom, Properties properties, File directory) throws MojoExecutionException {
         if (!pom.isFile()) {
             throw new MojoExecutionException("Unable to find the pom file: " + pom.getAbsolutePath());
         }
+        MavenProject project;
+        try (Metrics.Phase ignored = metrics.start("load-projects").count("poms", 1)) {
+            project = loadMavenProjects(Collections.singletonList(pom), properties, session).get(0).getProject();
+        } catch (ProjectBuildingException exception) {
+            log.error("Error(s) detected in the pom file: " + exception.getMessage());
+            throw new MojoExecutionException("Invalid pom file, check log", exception);
+        }
+        if (directory != null) {
+            relocate(project, directory);
+        }
+        return project;
+    }
 
-        MavenProject project = null;
-        try {
-            ProjectBuildingResult result = loadMavenProject(pom, properties, session);
-            project = result.getProject();
+    /**
+     * Moves the build directory of a project, and the output directories it contains.
+     */
+    private static void relocate(MavenProject project, File directory) {
+        Build build = project.getBuild();
+        String previous = build.getDirectory();
+        String target = directory.getAbsolutePath();
+        build.setDirectory(target);
+        build.setOutputDirectory(relocate(build.getOutputDirectory(), previous, target));
+        build.setTestOutputDirectory(relocate(build.getTestOutputDirectory(), previous, target));
+        Reporting reporting = project.getModel().getReporting();
+        if (reporting != null) {
+            reporting.setOutputDirectory(relocate(reporting.getOutputDirectory(), previous, target));
+        }
+    }
+
+    private static String relocate(String path, String previous, String target) {
+        return path != null && previous != null && path.startsWith(previous)
+            ? target + path.substring(previous.length()) : path;
+    }
+
+    /**
+     * Builds the given poms in a single nested session. The projects are sorted according to their dependencies,
+     * so independent projects can be built in parallel when the build is multithreaded.
+     *
+     * @param poms       the pom files
+     * @param phase      the phase to execute
+     * @param properties the additional user properties
+     * @return the built projects
+     * @throws MojoExecutionException if the poms are invalid or the build fails
+     */
+    public List<MavenProject> execute(List<File> poms, String phase, Properties properties)
+        throws MojoExecutionException {
+        for (File pom : poms) {
+            if (!pom.isFile()) {
+                throw new MojoExecutionException("Unable to find the pom file: " + pom.getAbsolutePath());
+            }
+        }
+
+        List<MavenProject> projects = new ArrayList<>();
+        try (Metrics.Phase ignored = metrics.start("load-projects").count("poms", poms.size())) {
+            for (ProjectBuildingResult result : loadMavenProjects(poms, properties, session)) {
+                projects.add(result.getProject());
+            }
         } catch (ProjectBuildingException exception) {
             log.error("Error(s) detected in the pom file: " + exception.getMessage());
             throw new MojoExecutionException("Invalid pom file, check log", exception);
         }
 
-        MavenExecutionRequest execRequest = getMavenExecutionRequest(phase);
-        MavenSession newSession = getMavenSession(project, execRequest);
+        build(projects, phase, properties);
+        return projects;
+    }
 
-        executor.execute(newSession);
+    /**
+     * Builds the given projects in a single nested session, without loading them again.
+     *
+     * @param projects   the projects
+     * @param phase      the phase to execute
+     * @param properties the additional user properties
+     * @throws MojoExecutionException if the projects cannot be sorted or the build fails
+     */
+    public void build(List<MavenProject> projects, String phase, Properties properties)
+        throws MojoExecutionException {
+        for (MavenProject project : projects) {
+            File output = outputDirectories.get(project.getBasedir());
+            if (output != null) {
+                project.getBuild().setOutputDirectory(output.getAbsolutePath());
+            }
+        }
+        ProjectDependencyGraph graph;
+        try {
+            graph = new ReactorDependencyGraph(projects);
+        } catch (CycleDetectedException | DuplicateProjectException e) {
+            throw new MojoExecutionException("Unable to sort the sanitized projects", e);
+        }
+
+        MavenExecutionRequest execRequest = getMavenExecutionRequest(phase, properties);
+        MavenSession newSession = getMavenSession(graph, execRequest);
+
+        try (Metrics.Phase ignored = metrics.start("nested-build").count("projects", projects.size())) {
+            executor.execute(newSession);
+        }
+        merge(newSession.getResult());
     }
 
-    private ProjectBuildingResult loadMavenProject(File pom, Properties sys, MavenSession session) throws
-        ProjectBuildingException {
+    /**
+     * Reports the build summaries of a nested build in the main session. Several nested builds may complete
+     * concurrently when the main build is multithreaded. The failures of the nested build are thrown, so the main
+     * build fails the current project and skips the projects depending on it.
+     *
+     * @throws MojoExecutionException if the nested build failed
+     */
+    private void merge(MavenExecutionResult nested) throws MojoExecutionException {
+        MavenExecutionResult result = session.getResult();
+        synchronized (result) {
+            for (MavenProject project : nested.getTopologicallySortedProjects()) {
+                BuildSummary summary = nested.getBuildSummary(project);
+                if (summary != null) {
+                    result.addBuildSummary(summary);
+                }
+            }
+        }
+        if (nested.hasExceptions()) {
+            List<Throwable> exceptions = nested.getExceptions();
+            MojoExecutionException failure = new MojoExecutionException("The sanitized build failed: "
+                + exceptions.get(0).getMessage(), exceptions.get(0));
+            for (Throwable exception : exceptions.subList(1, exceptions.size())) {
+                failure.addSuppressed(exception);
+            }
+            throw failure;
+        }
+    }
 
-        Properties properties = session.getUserProperties();
-        if (properties == null) {
-            properties = new Properties();
+    /**
+     * Creates the project of a sanitized model computed in memory, to build it without reading the sanitized pom
+     * again. The model is built by the project builder, as the written pom would be: the profiles are injected, the
+     * lifecycle plugins and the extensions are set up, as well as the repositories and the artifact of the project.
+     * The model must be an effective model, with the absolute project paths.
+     *
+     * @param model      the sanitized model
+     * @param pom        the sanitized pom file, setting the project directory
+     * @param properties the additional user properties
+     * @return the project
+     * @throws MojoExecutionException if the model is invalid
+     */
+    public MavenProject createProject(Model model, File pom, Properties properties) throws MojoExecutionException {
+        StringWriter writer = new StringWriter();
+        try {
+            new MavenXpp3Writer().write(writer, model);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Cannot serialize the sanitized model", e);
+        }
+        MavenProject project;
+        try (Metrics.Phase ignored = metrics.start("load-projects").count("models", 1)) {
+            project = projectBuilder.build(new StringModelSource(writer.getBuffer(), pom.getAbsolutePath()),
+                createProjectBuildingRequest(properties, session)).getProject();
+        } catch (ProjectBuildingException exception) {
+            log.error("Error(s) detected in the sanitized model: " + exception.getMessage());
+            throw new MojoExecutionException("Invalid sanitized model, check log", exception);
+        }
+        // The model source does not set the project directory
+        project.setFile(pom);
+        return project;
+    }
+
+    private List<ProjectBuildingResult> loadMavenProjects(List<File> poms, Properties sys, MavenSession session)
+        throws ProjectBuildingException {
+        return projectBuilder.build(poms, false, createProjectBuildingRequest(sys, session));
+    }
+
+    private ProjectBuildingRequest createProjectBuildingRequest(Properties sys, MavenSession session) {
+        // Do not alter the properties of the main session
+        Properties properties = new Properties();
+        if (session.getUserProperties() != null) {
+            properties.putAll(session.getUserProperties());
         }
         if (sys != null) {
             properties.putAll(sys);
@@ -101,54 +342,47 @@ public class MavenBuildExecutor {
         request.setInactiveProfileIds(session.getRequest().getInactiveProfiles());
         request.setPluginArtifactRepositories(session.getRequest().getPluginArtifactRepositories());
         request.setLocalRepository(session.getRequest().getLocalRepository());
-
-        return projectBuilder.build(pom, request);
+        return request;
     }
 
-    private MavenSession getMavenSession(final MavenProject project, MavenExecutionRequest request) {
+    private MavenSession getMavenSession(ProjectDependencyGraph graph, MavenExecutionRequest request) {
+        List<MavenProject> projects = graph.getSortedProjects();
+
+        // Only the nested projects are indexed, the other projects are resolved by the reader of the main session
+        Map<String, MavenProject> projectMap = new LinkedHashMap<>();
+        for (MavenProject project : projects) {
+            projectMap.put(ArtifactUtils.key(project.getGroupId(), project.getArtifactId(), project.getVersion()),
+                project);
+        }
+        DefaultRepositorySystemSession repositorySession =
+            new DefaultRepositorySystemSession(session.getRepositorySession());
+        repositorySession.setWorkspaceReader(ChainedWorkspaceReader.newInstance(
+            new NestedReactorReader(projectMap), session.getRepositorySession().getWorkspaceReader()));
+
+        // The nested build has its own result, merged in the main one once done
+        MavenExecutionResult result = new DefaultMavenExecutionResult();
+        result.setTopologicallySortedProjects(projects);
+        result.setProject(projects.get(0));
         MavenSession newSession = new MavenSession(container,
-            session.getRepositorySession(),
+            repositorySession,
             request,
-            session.getResult());
+            result);
         newSession.setAllProjects(session.getAllProjects());
-        newSession.setCurrentProject(project);
         newSession.setParallel(session.isParallel());
-        // Update project map to update the current project
-        Map<String, MavenProject> projectMaps = new LinkedHashMap<>(session.getProjectMap());
-        projectMaps.put(ArtifactUtils.key(project.getGroupId(), project.getArtifactId(),
-            project.getVersion()), project);
-        newSession.setProjectMap(projectMaps);
-
-        List<MavenProject> list = new ArrayList<>();
-        list.add(project);
-        /**
-         * Fake implementation of the project dependency graph, as we don't support reactor.
-         */
-        ProjectDependencyGraph graph = new ProjectDependencyGraph() {
-
-            @Override
-            public List<MavenProject> getSortedProjects() {
-                return list;
-            }
-
-            @Override
-            public List<MavenProject> getDownstreamProjects(MavenProject project, boolean transitive) {
-                return Collections.emptyList();
-            }
-
-            @Override
-            public List<MavenProject> getUpstreamProjects(MavenProject project, boolean transitive) {
-                return Collections.emptyList();
-            }
-        };
+        newSession.setProjectMap(projectMap);
         newSession.setProjectDependencyGraph(graph);
-        newSession.setProjects(list);
+        newSession.setProjects(projects);
+        newSession.setCurrentProject(projects.get(0));
         return newSession;
     }
 
-
-    private MavenExecutionRequest getMavenExecutionRequest(String phase) {
+    private MavenExecutionRequest getMavenExecutionRequest(String phase, Properties properties) {
         MavenExecutionRequest request = DefaultMavenExecutionRequest.copy(session.getRequest());
+        // The additional properties must also be visible to the plugins, without altering the main session
+        Properties userProperties = new Properties();
+        userProperties.putAll(session.getRequest().getUserProperties());
+        userProperties.putAll(properties);
+        request.setUserProperties(userProperties);
         request.setStartTime(session.getStartTime());
         request.setExecutionListener(null);
         List<String> goals = new ArrayList<>();
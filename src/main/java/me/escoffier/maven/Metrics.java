@@ -0,0 +1,172 @@
+package me.escoffier.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Records the duration, the allocated bytes and some counters of the phases of a goal, and writes them as a JSON
+ * report. The allocated bytes are the allocations of the thread executing the phase, when the JVM supports it.
+ * Phases can also be emitted as JFR events.
+ *
+ * @author <a href="http://escoffier.me">Clement Escoffier</a>
+ */
+public class Metrics {
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final String project;
+    private final String goal;
+    private final boolean jfr;
+    private final List<Phase> phases = new ArrayList<>();
+
+    /**
+     * @param project the project id
+     * @param goal    the goal
+     * @param jfr     whether the phases are also emitted as JFR events, ignored if JFR is not available
+     */
+    public Metrics(String project, String goal, boolean jfr) {
+        this.project = project;
+        this.goal = goal;
+        this.jfr = jfr && JfrPhaseEvent.isAvailable();
+    }
+
+    /**
+     * Starts a phase, the phase ends when closed.
+     *
+     * @param name the phase name
+     * @return the phase
+     */
+    public Phase start(String name) {
+        Phase phase = new Phase(name);
+        synchronized (phases) {
+            phases.add(phase);
+        }
+        return phase;
+    }
+
+    /**
+     * Writes the JSON report.
+     *
+     * @param file the report file
+     * @throws IOException if the file cannot be written
+     */
+    public void write(File file) throws IOException {
+        StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"project\": ").append(quote(project)).append(",\n");
+        json.append("  \"goal\": ").append(quote(goal)).append(",\n");
+        json.append("  \"phases\": [");
+        synchronized (phases) {
+            for (int i = 0; i < phases.size(); i++) {
+                json.append(i == 0 ? "\n" : ",\n");
+                phases.get(i).toJson(json);
+            }
+        }
+        json.append("\n  ]\n}\n");
+
+        File dir = file.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Unable to create " + dir.getAbsolutePath());
+        }
+        Files.write(file.toPath(), json.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder builder = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"':
+                    builder.append("\\\"");
+                    break;
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        builder.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        builder.append(c);
+                    }
+            }
+        }
+        return builder.append('"').toString();
+    }
+
+    private static long allocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    /**
+     * A running or completed phase.
+     */
+    public class Phase implements AutoCloseable {
+
+        private final String name;
+        private final Map<String, Long> counts = new LinkedHashMap<>();
+        private final long begin;
+        private final long allocationsAtBegin;
+        private final JfrPhaseEvent event;
+        private long duration = -1;
+        private long allocated = -1;
+
+        private Phase(String name) {
+            this.name = name;
+            this.event = jfr ? JfrPhaseEvent.begin(project, goal, name) : null;
+            this.allocationsAtBegin = allocatedBytes();
+            this.begin = System.nanoTime();
+        }
+
+        /**
+         * Adds a value to a counter of this phase.
+         *
+         * @param key   the counter name
+         * @param value the value to add
+         * @return this phase
+         */
+        public Phase count(String key, long value) {
+            counts.merge(key, value, Long::sum);
+            return this;
+        }
+
+        @Override
+        public void close() {
+            duration = System.nanoTime() - begin;
+            long allocations = allocatedBytes();
+            allocated = allocations < 0 || allocationsAtBegin < 0 ? -1 : allocations - allocationsAtBegin;
+            if (event != null) {
+                event.end(allocated);
+            }
+        }
+
+        private void toJson(StringBuilder json) {
+            json.append("    {\"name\": ").append(quote(name))
+                .append(", \"durationMs\": ").append(duration < 0 ? "null" : String.format(Locale.ROOT, "%.3f", duration / 1e6))
+                .append(", \"allocatedBytes\": ").append(allocated < 0 ? "null" : Long.toString(allocated))
+                .append(", \"counts\": {");
+            boolean first = true;
+            for (Map.Entry<String, Long> entry : counts.entrySet()) {
+                json.append(first ? "" : ", ").append(quote(entry.getKey())).append(": ").append(entry.getValue());
+                first = false;
+            }
+            json.append("}}");
+        }
+    }
+}
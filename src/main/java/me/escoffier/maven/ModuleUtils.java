@@ -2,18 +2,17 @@ package me.escoffier.maven;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.filefilter.FalseFileFilter;
-import org.apache.commons.io.filefilter.NameFileFilter;
-import org.apache.commons.io.filefilter.TrueFileFilter;
 import org.apache.commons.io.filefilter.WildcardFileFilter;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.project.MavenProject;
 
-import java.io.File;
-import java.io.IOException;
+import java.io.*;
 import java.nio.charset.StandardCharsets;
-import java.util.Collection;
-import java.util.List;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -22,8 +21,12 @@ import java.util.regex.Pattern;
  */
 public class ModuleUtils {
 
-    private static final Pattern PATTERN = Pattern.compile(".*name\\s*=\\s*\"([a-zA-Z0-9\\-]*)\".*");
-    
+    private static final Pattern PATTERN = Pattern.compile("\\bname\\s*=\\s*\"([a-zA-Z0-9\\-]*)\"");
+
+    private static final String PACKAGE_INFO = "package-info.java";
+
+    private static final String NAME_KEY = "name";
+
     static String findModuleName(Log log, MavenProject project) throws MojoExecutionException {
         try {
             String name = extractModuleNameFromPackageInfo(log, project);
@@ -36,7 +39,7 @@ public class ModuleUtils {
             log.warn("Unable to detect the module name from the resource directories, using artifact id");
             return project.getArtifactId();
 
-        } catch (IOException e) {
+        } catch (IOException | UncheckedIOException e) {
             throw new MojoExecutionException("Cannot extract the module name", e);
         }
     }
@@ -65,26 +68,192 @@ public class ModuleUtils {
     }
 
     private static String extractModuleNameFromPackageInfo(Log log, MavenProject project) throws IOException {
-        Collection<File> files = FileUtils.listFiles(new File(project.getBasedir(), "src/main/java"),
-            new NameFileFilter("package-info.java"), TrueFileFilter.INSTANCE);
-        if (files.isEmpty()) {
+        Path sources = project.getBasedir().toPath().resolve("src/main/java");
+        if (!Files.isDirectory(sources)) {
+            log.debug("No source directory");
+            return null;
+        }
+
+        Path cache = Paths.get(project.getBuild().getDirectory(), "sanitizer", "module-name.properties");
+        Properties cached = readCache(cache);
+        if (cached != null && isUpToDate(sources, cached)) {
+            String name = cached.getProperty(NAME_KEY);
+            log.debug("Module name read from " + cache + ": " + name);
+            return name.isEmpty() ? null : name;
+        }
+
+        Scan scan = ForkJoinPool.commonPool().invoke(new ScanTask(sources));
+        if (scan.packageInfos.isEmpty()) {
             log.debug("No package-info.java file");
         }
-        for (File file : files) {
-            log.debug("Reading " + file.getAbsolutePath());
-            List<String> lines = FileUtils.readLines(file, StandardCharsets.UTF_8);
-            for (String line : lines) {
-                if (line.contains("@ModuleGen")  || line.contains("@io.vertx.codegen.annotations.ModuleGen")) {
-                    log.debug("Line with @ModuleGen found: " + line);
-                    Matcher matcher = PATTERN.matcher(line);
-                    if (matcher.matches()) {
-                        log.info("Module name extracted from " + file.getAbsolutePath()
-                            + ": " + matcher.group(1));
-                        return matcher.group(1);
+
+        String name = null;
+        for (Path file : scan.packageInfos.keySet()) {
+            log.debug("Reading " + file);
+            name = readModuleName(log, file);
+            if (name != null) {
+                log.info("Module name extracted from " + file + ": " + name);
+                break;
+            }
+        }
+
+        writeCache(cache, sources, scan, name);
+        return name;
+    }
+
+    /**
+     * Reads the file until the first {@code @ModuleGen} annotation is complete, and extracts its name. The
+     * annotation can span several lines.
+     */
+    private static String readModuleName(Log log, Path file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            StringBuilder annotation = null;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (annotation == null) {
+                    int index = line.indexOf("@ModuleGen");
+                    if (index == -1) {
+                        index = line.indexOf("@io.vertx.codegen.annotations.ModuleGen");
+                    }
+                    if (index == -1) {
+                        continue;
                     }
+                    log.debug("Line with @ModuleGen found: " + line);
+                    annotation = new StringBuilder(line.substring(index));
+                } else {
+                    annotation.append(' ').append(line);
+                }
+
+                if (isComplete(annotation)) {
+                    Matcher matcher = PATTERN.matcher(annotation);
+                    return matcher.find() ? matcher.group(1) : null;
                 }
             }
         }
         return null;
     }
+
+    private static boolean isComplete(CharSequence annotation) {
+        int depth = 0;
+        boolean opened = false;
+        for (int i = 0; i < annotation.length(); i++) {
+            char c = annotation.charAt(i);
+            if (c == '(') {
+                depth++;
+                opened = true;
+            } else if (c == ')') {
+                depth--;
+                if (depth == 0) {
+                    return true;
+                }
+            }
+        }
+        // An annotation without parameters
+        return !opened && annotation.toString().contains("package ");
+    }
+
+    private static Properties readCache(Path cache) {
+        if (!Files.isRegularFile(cache)) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(cache)) {
+            properties.load(in);
+        } catch (IOException e) {
+            return null;
+        }
+        return properties.getProperty(NAME_KEY) == null ? null : properties;
+    }
+
+    /**
+     * Checks that the recorded directories and files have not been modified. As adding or removing a file or a
+     * directory changes the modification date of its parent, no package-info file can have been added or removed.
+     */
+    private static boolean isUpToDate(Path sources, Properties cached) throws IOException {
+        for (String key : cached.stringPropertyNames()) {
+            if (key.equals(NAME_KEY)) {
+                continue;
+            }
+            Path path = sources.resolve(key.substring(2));
+            if (!Files.exists(path, LinkOption.NOFOLLOW_LINKS)
+                || Files.getLastModifiedTime(path, LinkOption.NOFOLLOW_LINKS).toMillis()
+                != Long.parseLong(cached.getProperty(key))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void writeCache(Path cache, Path sources, Scan scan, String name) {
+        Properties properties = new Properties();
+        properties.setProperty(NAME_KEY, name == null ? "" : name);
+        for (Map.Entry<Path, Long> entry : scan.directories.entrySet()) {
+            properties.setProperty("d:" + sources.relativize(entry.getKey()), Long.toString(entry.getValue()));
+        }
+        for (Map.Entry<Path, Long> entry : scan.packageInfos.entrySet()) {
+            properties.setProperty("f:" + sources.relativize(entry.getKey()), Long.toString(entry.getValue()));
+        }
+        try {
+            Files.createDirectories(cache.getParent());
+            try (OutputStream out = Files.newOutputStream(cache)) {
+                properties.store(out, "Module name detection");
+            }
+        } catch (IOException e) {
+            // Only a cache, the scan is done again next time
+        }
+    }
+
+    /**
+     * The directories (with their modification dates) and package-info files found in a source tree. The files are
+     * sorted, so the detection does not depend on the scan order.
+     */
+    private static final class Scan {
+        private final Map<Path, Long> directories = new HashMap<>();
+        private final SortedMap<Path, Long> packageInfos = new TreeMap<>();
+
+        private Scan merge(Scan other) {
+            directories.putAll(other.directories);
+            packageInfos.putAll(other.packageInfos);
+            return this;
+        }
+    }
+
+    /**
+     * Scans a directory, sub-directories are scanned in parallel.
+     */
+    private static final class ScanTask extends RecursiveTask<Scan> {
+
+        private final Path directory;
+
+        private ScanTask(Path directory) {
+            this.directory = directory;
+        }
+
+        @Override
+        protected Scan compute() {
+            Scan scan = new Scan();
+            List<ScanTask> tasks = new ArrayList<>();
+            try {
+                scan.directories.put(directory,
+                    Files.getLastModifiedTime(directory, LinkOption.NOFOLLOW_LINKS).toMillis());
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                    for (Path path : stream) {
+                        if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                            ScanTask task = new ScanTask(path);
+                            task.fork();
+                            tasks.add(task);
+                        } else if (path.getFileName().toString().equals(PACKAGE_INFO)) {
+                            scan.packageInfos.put(path, Files.getLastModifiedTime(path).toMillis());
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            for (ScanTask task : tasks) {
+                scan.merge(task.join());
+            }
+            return scan;
+        }
+    }
 }
@@ -0,0 +1,97 @@
+package me.escoffier.maven;
+
+import org.apache.maven.RepositoryUtils;
+import org.apache.maven.artifact.ArtifactUtils;
+import org.apache.maven.project.MavenProject;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.repository.WorkspaceReader;
+import org.eclipse.aether.repository.WorkspaceRepository;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolves the artifacts of the projects built by a nested session, so the sanitized projects can depend on each
+ * other without being installed first. Artifacts from other projects are left to the reader of the main session.
+ *
+ * @author <a href="http://escoffier.me">Clement Escoffier</a>
+ */
+public class NestedReactorReader implements WorkspaceReader {
+
+    private final WorkspaceRepository repository = new WorkspaceRepository("sanitized-reactor");
+
+    private final Map<String, MavenProject> projects;
+
+    /**
+     * @param projects the projects indexed by {@link ArtifactUtils#key(String, String, String)}
+     */
+    public NestedReactorReader(Map<String, MavenProject> projects) {
+        this.projects = projects;
+    }
+
+    @Override
+    public WorkspaceRepository getRepository() {
+        return repository;
+    }
+
+    @Override
+    public File findArtifact(Artifact artifact) {
+        MavenProject project = projects.get(ArtifactUtils.key(artifact.getGroupId(), artifact.getArtifactId(),
+            artifact.getBaseVersion()));
+        if (project == null) {
+            return null;
+        }
+
+        if ("pom".equals(artifact.getExtension())) {
+            return project.getFile();
+        }
+
+        File file = find(artifact, project.getArtifact());
+        if (file != null) {
+            return file;
+        }
+        for (org.apache.maven.artifact.Artifact attached : project.getAttachedArtifacts()) {
+            file = find(artifact, attached);
+            if (file != null) {
+                return file;
+            }
+        }
+
+        // Not packaged yet, use the output directory
+        if (artifact.getClassifier().isEmpty() && "jar".equals(artifact.getExtension())) {
+            File classes = new File(project.getBuild().getOutputDirectory());
+            if (classes.isDirectory()) {
+                return classes;
+            }
+        }
+        return null;
+    }
+
+    private File find(Artifact requested, org.apache.maven.artifact.Artifact candidate) {
+        if (candidate == null || candidate.getFile() == null || !candidate.getFile().isFile()) {
+            return null;
+        }
+        Artifact artifact = RepositoryUtils.toArtifact(candidate);
+        if (artifact.getClassifier().equals(requested.getClassifier())
+            && artifact.getExtension().equals(requested.getExtension())) {
+            return candidate.getFile();
+        }
+        return null;
+    }
+
+    @Override
+    public List<String> findVersions(Artifact artifact) {
+        List<String> versions = new ArrayList<>();
+        Collection<MavenProject> values = projects.values();
+        for (MavenProject project : values) {
+            if (project.getGroupId().equals(artifact.getGroupId())
+                && project.getArtifactId().equals(artifact.getArtifactId())) {
+                versions.add(project.getVersion());
+            }
+        }
+        return versions;
+    }
+}
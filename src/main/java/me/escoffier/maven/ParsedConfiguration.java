@@ -0,0 +1,226 @@
+package me.escoffier.maven;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.project.MavenProject;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.error.YAMLException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * The immutable, validated content of a sanitizer configuration file. It is independent of the project, and can be
+ * shared by all the projects using the same file. {@link #toConfiguration(MavenProject)} resolves it for a given
+ * project.
+ *
+ * @author <a href="http://escoffier.me">Clement Escoffier</a>
+ */
+public final class ParsedConfiguration {
+
+    private static final Set<String> LISTS = new HashSet<>(Arrays.asList(
+        "excluded-dependencies", "excluded-resources", "excluded-plugins", "profiles"));
+
+    private static final Set<String> SCALARS = new HashSet<>(Arrays.asList(
+        "module", "groupId", "artifactId", "version", "parent-version"));
+
+    /**
+     * The keys that cannot be set per variant: the variants share the module name, and the effective model computed
+     * with the parent version.
+     */
+    private static final Set<String> SHARED = new HashSet<>(Arrays.asList("module", "parent-version"));
+
+    private static final String VARIANTS = "variants";
+
+    private final String location;
+    private final String hash;
+    private final Map<String, List<String>> lists;
+    private final Map<String, String> scalars;
+    private final List<String> warnings;
+    private final Map<String, ParsedConfiguration> variants;
+
+    private ParsedConfiguration(String location, String hash, Map<String, List<String>> lists,
+                                Map<String, String> scalars, List<String> warnings,
+                                Map<String, ParsedConfiguration> variants) {
+        this.location = location;
+        this.hash = hash;
+        this.lists = lists;
+        this.scalars = scalars;
+        this.warnings = warnings;
+        this.variants = variants;
+    }
+
+    /**
+     * Parses and validates the given content.
+     *
+     * @param content  the YAML content
+     * @param location the location of the content, used in error messages
+     * @return the parsed configuration
+     * @throws MojoExecutionException if the content is not valid, the message lists all the errors
+     */
+    public static ParsedConfiguration parse(String content, String location) throws MojoExecutionException {
+        Object root;
+        try {
+            root = new Yaml().load(content);
+        } catch (YAMLException e) {
+            throw new MojoExecutionException("Invalid configuration " + location + ": " + e.getMessage(), e);
+        }
+        if (root == null) {
+            root = Collections.emptyMap();
+        }
+        if (!(root instanceof Map)) {
+            throw new MojoExecutionException("Invalid configuration " + location + ": the root must be a map");
+        }
+
+        List<String> errors = new ArrayList<>();
+        List<String> warnings = new ArrayList<>();
+        Map<String, List<String>> lists = new HashMap<>();
+        Map<String, String> scalars = new HashMap<>();
+        Object declared = null;
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>) root).entrySet()) {
+            if (VARIANTS.equals(String.valueOf(entry.getKey()))) {
+                declared = entry.getValue();
+            } else {
+                parseEntry(entry, "", false, lists, scalars, errors, warnings, location);
+            }
+        }
+
+        String hash = Fingerprint.hash(content.getBytes(StandardCharsets.UTF_8));
+        Map<String, ParsedConfiguration> variants = new LinkedHashMap<>();
+        if (declared instanceof Map) {
+            for (Map.Entry<?, ?> variant : ((Map<?, ?>) declared).entrySet()) {
+                String name = String.valueOf(variant.getKey());
+                if (!name.matches("[a-zA-Z0-9_.\\-]+")) {
+                    errors.add("the variant name '" + name + "' must only contain letters, digits, '.', '_' or '-'");
+                    continue;
+                }
+                // The variant inherits the top-level values, and overrides the keys it declares
+                Map<String, List<String>> variantLists = new HashMap<>(lists);
+                Map<String, String> variantScalars = new HashMap<>(scalars);
+                if (variant.getValue() instanceof Map) {
+                    for (Map.Entry<?, ?> entry : ((Map<?, ?>) variant.getValue()).entrySet()) {
+                        parseEntry(entry, VARIANTS + "." + name + ".", true, variantLists, variantScalars, errors,
+                            warnings, location);
+                    }
+                } else if (variant.getValue() != null) {
+                    errors.add("'" + VARIANTS + "." + name + "' must be a map");
+                }
+                variants.put(name, new ParsedConfiguration(location + "#" + name, hash,
+                    Collections.unmodifiableMap(variantLists), Collections.unmodifiableMap(variantScalars),
+                    Collections.<String>emptyList(), Collections.<String, ParsedConfiguration>emptyMap()));
+            }
+        } else if (declared != null) {
+            errors.add("'" + VARIANTS + "' must be a map");
+        }
+
+        if (!errors.isEmpty()) {
+            throw new MojoExecutionException("Invalid configuration " + location + ": " + String.join(", ", errors));
+        }
+        return new ParsedConfiguration(location, hash, Collections.unmodifiableMap(lists),
+            Collections.unmodifiableMap(scalars), Collections.unmodifiableList(warnings),
+            Collections.unmodifiableMap(variants));
+    }
+
+    private static void parseEntry(Map.Entry<?, ?> entry, String prefix, boolean variant,
+                                   Map<String, List<String>> lists, Map<String, String> scalars,
+                                   List<String> errors, List<String> warnings, String location) {
+        String key = String.valueOf(entry.getKey());
+        Object value = entry.getValue();
+        if (variant && SHARED.contains(key)) {
+            errors.add("'" + prefix + key + "' cannot be set per variant");
+        } else if (LISTS.contains(key)) {
+            if (value == null) {
+                lists.remove(key);
+                return;
+            }
+            if (!(value instanceof List)) {
+                errors.add("'" + prefix + key + "' must be a list");
+                return;
+            }
+            List<String> items = new ArrayList<>();
+            for (Object item : (List<?>) value) {
+                if (item == null || item instanceof Map || item instanceof Collection) {
+                    errors.add("'" + prefix + key + "' must only contain strings, found " + item);
+                } else {
+                    items.add(item.toString());
+                }
+            }
+            lists.put(key, Collections.unmodifiableList(items));
+        } else if (SCALARS.contains(key)) {
+            if (value instanceof Map || value instanceof Collection) {
+                errors.add("'" + prefix + key + "' must be a string");
+            } else if (value != null) {
+                scalars.put(key, value.toString());
+            }
+        } else {
+            warnings.add("Unknown configuration key '" + prefix + key + "' in " + location + ", ignored");
+        }
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    /**
+     * @return the hash of the configuration content
+     */
+    public String getHash() {
+        return hash;
+    }
+
+    /**
+     * @return the non-fatal problems found while parsing the content
+     */
+    public List<String> getWarnings() {
+        return warnings;
+    }
+
+    /**
+     * @return the named variants declared in the {@code variants} section, in declaration order, empty if the
+     * configuration declares no variant. Each variant inherits the top-level values and overrides the keys it
+     * declares, lists are replaced, not merged.
+     */
+    public Map<String, ParsedConfiguration> getVariants() {
+        return variants;
+    }
+
+    private List<String> list(String key) {
+        List<String> list = lists.get(key);
+        return list == null ? Collections.emptyList() : list;
+    }
+
+    /**
+     * Creates the configuration of the given project.
+     *
+     * @param project the project
+     * @return a new configuration
+     */
+    public Configuration toConfiguration(MavenProject project) {
+        String groupId = scalars.get("groupId");
+        String artifactId = scalars.get("artifactId");
+        String version = scalars.get("version");
+
+        if (groupId == null) {
+            groupId = project.getGroupId();
+        }
+
+        if (artifactId == null) {
+            artifactId = project.getArtifactId();
+        }
+
+        if (version == null) {
+            version = project.getVersion();
+        } else {
+            version = version.replace("${version}", project.getVersion());
+        }
+
+        return new Configuration().setModuleName(scalars.get("module"))
+            .setExcludedDependencies(new LinkedHashSet<>(list("excluded-dependencies")))
+            .setExcludedPlugins(new LinkedHashSet<>(list("excluded-plugins")))
+            .setExcludedResources(new LinkedHashSet<>(list("excluded-resources")))
+            .setProfiles(new LinkedHashSet<>(list("profiles")))
+            .setGroupId(groupId)
+            .setArtifactId(artifactId)
+            .setVersion(version)
+            .setParentVersion(scalars.get("parent-version"));
+    }
+}
@@ -0,0 +1,70 @@
+package me.escoffier.maven;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * A writer replacing all the occurrences of a path by a replacement while the content is written. Only a prefix of
+ * the searched path is buffered, so the content never has to be loaded in memory.
+ *
+ * @author <a href="http://escoffier.me">Clement Escoffier</a>
+ */
+public class PathReplacingWriter extends FilterWriter {
+
+    private final String path;
+    private final String replacement;
+    private final StringBuilder pending = new StringBuilder();
+
+    public PathReplacingWriter(Writer out, String path, String replacement) {
+        super(out);
+        if (path == null || path.isEmpty()) {
+            throw new IllegalArgumentException("The replaced path must not be empty");
+        }
+        this.path = path;
+        this.replacement = replacement;
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        pending.append((char) c);
+        while (pending.length() > 0 && !isPrefix()) {
+            out.write(pending.charAt(0));
+            pending.deleteCharAt(0);
+        }
+        if (pending.length() == path.length()) {
+            out.write(replacement);
+            pending.setLength(0);
+        }
+    }
+
+    @Override
+    public void write(char[] buffer, int off, int len) throws IOException {
+        for (int i = off; i < off + len; i++) {
+            write(buffer[i]);
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        for (int i = off; i < off + len; i++) {
+            write(str.charAt(i));
+        }
+    }
+
+    private boolean isPrefix() {
+        for (int i = 0; i < pending.length(); i++) {
+            if (pending.charAt(i) != path.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.write(pending.toString());
+        pending.setLength(0);
+        super.close();
+    }
+}
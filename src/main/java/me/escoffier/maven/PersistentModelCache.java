@@ -0,0 +1,187 @@
+package me.escoffier.maven;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.DependencyManagement;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Profile;
+import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
+import org.apache.maven.model.io.xpp3.MavenXpp3Writer;
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.repository.LocalRepositoryManager;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A model cache persisting the dependency management of the imported poms (such as {@code vertx-dependencies}) in
+ * the local repository, so they are only resolved and built once, across builds. The entries are keyed by the
+ * coordinates of the imported pom, the checksum of its file in the local repository and the hash of the build
+ * context interpolating it (see {@link #hashContext(MavenSession)}). Snapshots are only cached in memory, as their
+ * content can change without changing their coordinates.
+ * <p>
+ * Raw parent models are only cached in memory: the type the model builder stores for them is not accessible.
+ *
+ * @author <a href="http://escoffier.me">Clement Escoffier</a>
+ */
+public class PersistentModelCache extends ConcurrentModelCache {
+
+    private static final String IMPORT = "import";
+
+    /**
+     * The system properties used by the activation of the profiles.
+     */
+    private static final String[] ACTIVATION_PROPERTIES = {"java.version", "os.name", "os.arch", "os.version"};
+
+    private final RepositorySystemSession repoSession;
+    private final String context;
+    private final File directory;
+    private final Log log;
+    private final Map<String, String> checksums = new ConcurrentHashMap<>();
+
+    /**
+     * @param repoSession the repository session, giving access to the local repository
+     * @param context     the hash of the build context, see {@link #hashContext(MavenSession)}
+     * @param log         the logger
+     */
+    public PersistentModelCache(RepositorySystemSession repoSession, String context, Log log) {
+        this.repoSession = repoSession;
+        this.context = context;
+        this.directory = new File(repoSession.getLocalRepository().getBasedir(),
+            ".cache/vertx-artifact-sanitizer/imports");
+        this.log = log;
+    }
+
+    /**
+     * Computes the hash of the build context affecting the interpolation of the imported poms and the activation of
+     * their profiles: the user properties, the active and inactive profiles, the profiles of the settings and the
+     * system properties used by the profile activation (JDK and OS). The other system properties and the environment
+     * variables are not part of the hash.
+     *
+     * @param session the session
+     * @return the hash of the context
+     */
+    public static String hashContext(MavenSession session) {
+        StringBuilder builder = new StringBuilder();
+        builder.append("properties=").append(new TreeMap<>(session.getUserProperties())).append('\n');
+        builder.append("active=").append(session.getRequest().getActiveProfiles()).append('\n');
+        builder.append("inactive=").append(session.getRequest().getInactiveProfiles()).append('\n');
+        for (Profile profile : session.getRequest().getProfiles()) {
+            builder.append("profile=").append(profile.getId()).append(new TreeMap<>(profile.getProperties()))
+                .append('\n');
+        }
+        Properties system = session.getSystemProperties();
+        for (String name : ACTIVATION_PROPERTIES) {
+            builder.append(name).append('=').append(system.getProperty(name)).append('\n');
+        }
+        return Fingerprint.hash(builder.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void put(String groupId, String artifactId, String version, String tag, Object data) {
+        super.put(groupId, artifactId, version, tag, data);
+        File file = getFile(groupId, artifactId, version, tag);
+        if (file != null && data instanceof DependencyManagement && !file.isFile()) {
+            write(file, (DependencyManagement) data);
+        }
+    }
+
+    @Override
+    public Object get(String groupId, String artifactId, String version, String tag) {
+        Object data = super.get(groupId, artifactId, version, tag);
+        if (data != null) {
+            return data;
+        }
+        File file = getFile(groupId, artifactId, version, tag);
+        if (file != null && file.isFile()) {
+            DependencyManagement management = read(file);
+            if (management != null) {
+                log.debug("Using the cached dependency management of " + groupId + ":" + artifactId + ":" + version);
+                super.put(groupId, artifactId, version, tag, management);
+                return management;
+            }
+        }
+        return null;
+    }
+
+    private File getFile(String groupId, String artifactId, String version, String tag) {
+        if (!IMPORT.equals(tag) || version == null || version.endsWith("SNAPSHOT")) {
+            return null;
+        }
+        String checksum = getChecksum(groupId, artifactId, version);
+        if (checksum == null) {
+            return null;
+        }
+        return new File(directory, groupId + "/" + artifactId + "/" + version + "/" + checksum + "/" + context
+            + ".xml");
+    }
+
+    private String getChecksum(String groupId, String artifactId, String version) {
+        String key = groupId + ":" + artifactId + ":" + version;
+        String checksum = checksums.get(key);
+        if (checksum != null) {
+            return checksum;
+        }
+        LocalRepositoryManager manager = repoSession.getLocalRepositoryManager();
+        File pom = new File(manager.getRepository().getBasedir(),
+            manager.getPathForLocalArtifact(new DefaultArtifact(groupId, artifactId, "pom", version)));
+        if (!pom.isFile()) {
+            return null;
+        }
+        try {
+            checksum = Files.hash(pom, Hashing.sha256()).toString();
+        } catch (IOException e) {
+            log.debug("Unable to compute the checksum of " + pom.getAbsolutePath(), e);
+            return null;
+        }
+        checksums.put(key, checksum);
+        return checksum;
+    }
+
+    private DependencyManagement read(File file) {
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            return new MavenXpp3Reader().read(reader).getDependencyManagement();
+        } catch (IOException | XmlPullParserException e) {
+            log.debug("Ignoring the invalid cache entry " + file.getAbsolutePath(), e);
+            return null;
+        }
+    }
+
+    private void write(File file, DependencyManagement management) {
+        // The dependency management is stored in a minimal model, so the model reader and writer can be used
+        Model model = new Model();
+        model.setDependencyManagement(management);
+        try {
+            File dir = file.getParentFile();
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("Unable to create " + dir.getAbsolutePath());
+            }
+            File tmp = File.createTempFile(file.getName(), ".tmp", dir);
+            try {
+                try (Writer writer = new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8)) {
+                    new MavenXpp3Writer().write(writer, model);
+                }
+                try {
+                    java.nio.file.Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    java.nio.file.Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                java.nio.file.Files.deleteIfExists(tmp.toPath());
+            }
+        } catch (IOException e) {
+            // The cache is an optimization, the build must not fail because of it
+            log.debug("Unable to write the cache entry " + file.getAbsolutePath(), e);
+        }
+    }
+}
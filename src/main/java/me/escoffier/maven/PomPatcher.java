@@ -0,0 +1,865 @@
+package me.escoffier.maven;
+
+import org.apache.maven.model.Exclusion;
+import org.apache.maven.model.Resource;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.*;
+import javax.xml.stream.events.Characters;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Sanitizes a pom by patching its original content, instead of writing its effective model. The pom is parsed with
+ * StAX, event by event, and the original text of each unchanged event is copied to the output, so the formatting, the
+ * comments, the attribute layout, the empty elements and the character references are kept, and only the patched
+ * parts change. The inserted elements follow the indentation of the pom. Only the elements that need to be inspected
+ * as a whole (a dependency, a plugin, a resource or a profile) are buffered. The pom is read twice, a first pass
+ * looking for its encoding and for its declared coordinates.
+ * <p>
+ * The patches are the ones of the effective model sanitization, applied to the declared elements only: the
+ * coordinates and the parent version are set, the excluded dependencies and plugins are removed, the exclusions are
+ * added to the compile dependencies, the excluded resources are added to the resource excludes (the resources are
+ * declared if the pom does not declare them) and the configured profiles are activated. The parent and the
+ * dependency management are kept, so the inherited dependencies and plugins are not sanitized.
+ *
+ * @author <a href="http://escoffier.me">Clement Escoffier</a>
+ */
+public class PomPatcher {
+
+    private static final XMLInputFactory INPUTS = XMLInputFactory.newInstance();
+    private static final XMLEventFactory EVENTS = XMLEventFactory.newInstance();
+
+    static {
+        INPUTS.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        INPUTS.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        // Keep the CDATA sections, the JDK parser reports them as text by default
+        String cdata = "http://java.sun.com/xml/stream/properties/report-cdata-event";
+        if (INPUTS.isPropertySupported(cdata)) {
+            INPUTS.setProperty(cdata, true);
+        }
+    }
+
+    private String groupId;
+    private String inheritedGroupId;
+    private String artifactId;
+    private String version;
+    private String inheritedVersion;
+    private String parentVersion;
+    private RuleSet rules;
+    private ResourceIndex resourceIndex;
+    private File basedir;
+    private File buildDirectory;
+    private List<Resource> resources = Collections.emptyList();
+
+    /**
+     * @param groupId          the groupId of the sanitized pom
+     * @param inheritedGroupId the groupId of the original project, a missing groupId is only added if it differs
+     * @param artifactId       the artifactId of the sanitized pom
+     * @param version          the version of the sanitized pom
+     * @param inheritedVersion the version of the original project, a missing version is only added if it differs
+     */
+    public PomPatcher setCoordinates(String groupId, String inheritedGroupId, String artifactId, String version,
+                                     String inheritedVersion) {
+        this.groupId = groupId;
+        this.inheritedGroupId = inheritedGroupId;
+        this.artifactId = artifactId;
+        this.version = version;
+        this.inheritedVersion = inheritedVersion;
+        return this;
+    }
+
+    public PomPatcher setParentVersion(String parentVersion) {
+        this.parentVersion = parentVersion;
+        return this;
+    }
+
+    public PomPatcher setRules(RuleSet rules) {
+        this.rules = rules;
+        return this;
+    }
+
+    /**
+     * @param resourceIndex the excluded resources
+     * @param basedir        the project directory
+     * @param buildDirectory the build directory, in which the generated resources are usually declared
+     * @param resources      the effective resources of the project, declared when the pom does not declare its
+     *                       resources
+     */
+    public PomPatcher setResources(ResourceIndex resourceIndex, File basedir, File buildDirectory,
+                                   List<Resource> resources) {
+        this.resourceIndex = resourceIndex;
+        this.basedir = basedir;
+        this.buildDirectory = buildDirectory;
+        this.resources = resources;
+        return this;
+    }
+
+    /**
+     * Patches the given pom.
+     *
+     * @param pom   the original pom
+     * @param out   the stream receiving the patched pom, not closed
+     * @param phase the phase receiving the counters
+     * @throws IOException if the pom cannot be read, parsed or written
+     */
+    public void patch(File pom, OutputStream out, Metrics.Phase phase) throws IOException {
+        try {
+            // The coordinates may be declared after the artifactId, they are looked up before patching
+            Set<String> declared = new HashSet<>();
+            Charset charset;
+            try (InputStream in = new BufferedInputStream(new FileInputStream(pom))) {
+                XMLStreamReader reader = INPUTS.createXMLStreamReader(in);
+                String encoding = reader.getCharacterEncodingScheme() != null
+                    ? reader.getCharacterEncodingScheme() : reader.getEncoding();
+                charset = encoding == null ? StandardCharsets.UTF_8 : Charset.forName(encoding);
+                int depth = 0;
+                while (reader.hasNext()) {
+                    int event = reader.next();
+                    if (event == XMLStreamConstants.START_ELEMENT && ++depth == 2) {
+                        declared.add(reader.getLocalName());
+                    } else if (event == XMLStreamConstants.END_ELEMENT) {
+                        depth--;
+                    }
+                }
+            }
+
+            try (PushbackReader in = new PushbackReader(new InputStreamReader(
+                new BufferedInputStream(new FileInputStream(pom)), charset))) {
+                Writer writer = new OutputStreamWriter(out, charset);
+                int first = in.read();
+                if (first == '\uFEFF') {
+                    writer.write(first);
+                } else if (first != -1) {
+                    in.unread(first);
+                }
+                Source source = new Source(in);
+                Run run = new Run(writer, source, phase, declared);
+                run.process(INPUTS.createXMLEventReader(source));
+                writer.flush();
+            }
+        } catch (XMLStreamException | IllegalArgumentException e) {
+            throw new IOException("Unable to patch " + pom.getAbsolutePath() + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * The text of the pom, read by the parser and kept until the text of the corresponding events is consumed.
+     */
+    private static final class Source extends Reader {
+        private final Reader reader;
+        private final StringBuilder buffer = new StringBuilder();
+        private boolean selfClosed;
+
+        private Source(Reader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public int read(char[] chars, int offset, int length) throws IOException {
+            int read = reader.read(chars, offset, length);
+            if (read > 0) {
+                buffer.append(chars, offset, read);
+            }
+            return read;
+        }
+
+        @Override
+        public void close() {
+            // The parser closes its input at the end of the document, the pom is closed once fully consumed
+        }
+
+        /**
+         * Consumes the original text of the given event, the parser having read it. The whitespace outside of the
+         * root element is not reported by the parser, it is consumed with the next event.
+         *
+         * @param event the event, several consecutive text events being consumed at once
+         * @return the original text of the event
+         */
+        private String consume(XMLEvent event) throws XMLStreamException {
+            int start = buffer.indexOf("<");
+            if (event.isCharacters() && event.asCharacters().isCData()) {
+                // The CDATA sections are reported as text
+                return take(end(start, "]]>"));
+            }
+            switch (event.getEventType()) {
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.SPACE:
+                    // A text contains no '<', it ends with the next markup
+                    return take(start);
+                case XMLStreamConstants.START_DOCUMENT:
+                    return buffer.indexOf("<?xml") == 0 ? take(end(0, "?>")) : "";
+                case XMLStreamConstants.END_DOCUMENT:
+                    try {
+                        // The whitespace following the root element may not have been read by the parser
+                        char[] chars = new char[1024];
+                        while (read(chars, 0, chars.length) != -1) {
+                            continue;
+                        }
+                    } catch (IOException e) {
+                        throw new XMLStreamException("Unable to read the end of the document", e);
+                    }
+                    return take(buffer.length());
+                case XMLStreamConstants.START_ELEMENT:
+                    String text = take(tagEnd(start));
+                    selfClosed = text.endsWith("/>");
+                    return text;
+                case XMLStreamConstants.END_ELEMENT:
+                    if (selfClosed) {
+                        // The end of an empty element is part of its start tag
+                        selfClosed = false;
+                        return "";
+                    }
+                    return take(end(start, ">"));
+                case XMLStreamConstants.COMMENT:
+                    return take(end(start, "-->"));
+                case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                    return take(end(start, "?>"));
+                default:
+                    return take(tagEnd(start));
+            }
+        }
+
+        private int end(int start, String delimiter) throws XMLStreamException {
+            int index = start == -1 ? -1 : buffer.indexOf(delimiter, start);
+            if (index == -1) {
+                throw new XMLStreamException("Unable to locate the end of the markup in '" + buffer + "'");
+            }
+            return index + delimiter.length();
+        }
+
+        /**
+         * @return the end of the tag starting at {@code start}, a {@code '>'} being allowed in the attribute values
+         */
+        private int tagEnd(int start) throws XMLStreamException {
+            char quote = 0;
+            for (int i = Math.max(start, 0); i < buffer.length(); i++) {
+                char c = buffer.charAt(i);
+                if (quote != 0) {
+                    quote = c == quote ? 0 : quote;
+                } else if (c == '"' || c == '\'') {
+                    quote = c;
+                } else if (c == '>') {
+                    return i + 1;
+                }
+            }
+            throw new XMLStreamException("Unable to locate the end of the tag in '" + buffer + "'");
+        }
+
+        private String take(int end) {
+            int length = end == -1 ? buffer.length() : end;
+            String text = buffer.substring(0, length);
+            buffer.delete(0, length);
+            return text;
+        }
+    }
+
+    /**
+     * An element buffered until its end, and then patched, kept or dropped.
+     */
+    private static final class Frame {
+        private final String kind;
+        private final int depth;
+        private final List<XMLEvent> leading;
+        private final List<XMLEvent> events = new ArrayList<>();
+        private final List<XMLEvent> pending = new ArrayList<>();
+
+        private Frame(String kind, int depth, List<XMLEvent> leading) {
+            this.kind = kind;
+            this.depth = depth;
+            this.leading = leading;
+        }
+    }
+
+    /**
+     * The state of a single patch execution.
+     */
+    private final class Run {
+
+        private final Writer writer;
+        private final Source source;
+        private final Metrics.Phase phase;
+        private final boolean groupIdDeclared;
+        private final boolean versionDeclared;
+        private final List<String> path = new ArrayList<>();
+        private final Deque<Frame> frames = new ArrayDeque<>();
+        private final List<XMLEvent> pending = new ArrayList<>();
+        // The original text of the events read from the pom, the created events are serialized
+        private final Map<XMLEvent, String> texts = new IdentityHashMap<>();
+
+        private String namespace = "";
+        private String unit;
+        private String newline = "\n";
+        private String replacement;
+        private String emptyElement;
+        private boolean buildSeen;
+        private boolean resourcesSeen;
+
+        private Run(Writer writer, Source source, Metrics.Phase phase, Set<String> declared) {
+            this.writer = writer;
+            this.source = source;
+            this.phase = phase;
+            this.groupIdDeclared = declared.contains("groupId");
+            this.versionDeclared = declared.contains("version");
+        }
+
+        private void process(XMLEventReader reader) throws XMLStreamException {
+            while (reader.hasNext()) {
+                XMLEvent event = reader.nextEvent();
+                if (isText(event)) {
+                    // The parser may split a text around its references, the text is handled as a whole
+                    StringBuilder data = new StringBuilder(event.asCharacters().getData());
+                    while (reader.hasNext() && isText(reader.peek())) {
+                        data.append(reader.nextEvent().asCharacters().getData());
+                    }
+                    event = EVENTS.createCharacters(data.toString());
+                }
+                texts.put(event, source.consume(event));
+                if (event.isStartElement()) {
+                    startElement(event.asStartElement());
+                } else if (event.isEndElement()) {
+                    endElement(event);
+                } else if (event.isCharacters() && replacement != null) {
+                    // The text of a patched element is replaced by the first text event
+                    if (!replacement.isEmpty()) {
+                        if (!event.asCharacters().getData().equals(replacement)) {
+                            texts.remove(event);
+                            event = EVENTS.createCharacters(replacement);
+                        }
+                        emit(event);
+                        replacement = "";
+                    } else {
+                        texts.remove(event);
+                    }
+                } else {
+                    emit(event);
+                }
+            }
+            flush(pending);
+        }
+
+        private void startElement(StartElement element) throws XMLStreamException {
+            String name = element.getName().getLocalPart();
+            if (path.isEmpty()) {
+                namespace = element.getName().getNamespaceURI();
+            } else if (unit == null && path.size() == 1) {
+                detectIndentation();
+            }
+            path.add(name);
+            String location = String.join("/", path);
+
+            String kind = frameKind(location);
+            if (kind != null) {
+                List<XMLEvent> sinkPending = frames.isEmpty() ? pending : frames.peek().pending;
+                List<XMLEvent> leading = new ArrayList<>(sinkPending);
+                sinkPending.clear();
+                frames.push(new Frame(kind, path.size(), leading));
+            }
+            emit(element);
+
+            switch (location) {
+                case "project/groupId":
+                    replacement = groupId;
+                    break;
+                case "project/version":
+                    replacement = version;
+                    break;
+                case "project/artifactId":
+                    replacement = artifactId;
+                    break;
+                case "project/parent/version":
+                    replacement = parentVersion;
+                    break;
+                case "project/build":
+                    buildSeen = true;
+                    break;
+                case "project/build/resources":
+                    resourcesSeen = true;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private void endElement(XMLEvent event) throws XMLStreamException {
+            String location = String.join("/", path);
+            if (replacement != null && !replacement.isEmpty()) {
+                // The patched element has no text
+                emit(EVENTS.createCharacters(replacement));
+            }
+            replacement = null;
+
+            if (location.equals("project/build") && !resourcesSeen) {
+                insert(resourcesBlock(2));
+            } else if (location.equals("project") && !buildSeen) {
+                List<XMLEvent> resourcesBlock = resourcesBlock(2);
+                if (!resourcesBlock.isEmpty()) {
+                    List<XMLEvent> block = new ArrayList<>();
+                    block.add(indent(1));
+                    block.add(EVENTS.createStartElement("", namespace, "build"));
+                    block.addAll(resourcesBlock);
+                    block.add(indent(1));
+                    block.add(EVENTS.createEndElement("", namespace, "build"));
+                    insert(block);
+                }
+            }
+
+            emit(event);
+
+            if (location.equals("project/artifactId")) {
+                // The missing coordinates are added after the artifactId
+                List<XMLEvent> block = new ArrayList<>();
+                if (!groupIdDeclared && groupId != null && !groupId.equals(inheritedGroupId)) {
+                    block.addAll(leaf("groupId", groupId, 1));
+                }
+                if (!versionDeclared && version != null && !version.equals(inheritedVersion)) {
+                    block.addAll(leaf("version", version, 1));
+                }
+                insert(block);
+            }
+
+            if (!frames.isEmpty() && frames.peek().depth == path.size()) {
+                close(frames.pop());
+            }
+            path.remove(path.size() - 1);
+        }
+
+        private String frameKind(String location) {
+            if (location.equals("project/dependencies/dependency")
+                || location.equals("project/profiles/profile/dependencies/dependency")) {
+                return "dependency";
+            }
+            if (location.endsWith("/plugins/plugin") && !location.contains("/plugin/")) {
+                return "plugin";
+            }
+            if (location.equals("project/build/resources/resource")
+                || location.equals("project/profiles/profile/build/resources/resource")) {
+                return "resource";
+            }
+            if (location.equals("project/profiles/profile")) {
+                return "profile";
+            }
+            return null;
+        }
+
+        private void detectIndentation() {
+            for (XMLEvent event : pending) {
+                String data = event.asCharacters().getData();
+                int index = data.lastIndexOf('\n');
+                if (index != -1) {
+                    unit = data.substring(index + 1);
+                    newline = data.contains("\r\n") ? "\r\n" : "\n";
+                }
+            }
+            if (unit == null || unit.isEmpty()) {
+                unit = "  ";
+            }
+        }
+
+        /**
+         * Emits an event in the current frame, or in the output. Whitespace is kept pending until the next event,
+         * so it can be dropped with a removed element, or follow an inserted block.
+         */
+        private void emit(XMLEvent event) throws XMLStreamException {
+            List<XMLEvent> sinkPending = frames.isEmpty() ? pending : frames.peek().pending;
+            if (isWhitespace(event)) {
+                sinkPending.add(event);
+                return;
+            }
+            add(sinkPending);
+            sinkPending.clear();
+            add(Collections.singletonList(event));
+        }
+
+        /**
+         * Inserts events before the pending whitespace.
+         */
+        private void insert(List<XMLEvent> events) throws XMLStreamException {
+            add(events);
+        }
+
+        private void add(List<XMLEvent> events) throws XMLStreamException {
+            if (frames.isEmpty()) {
+                flush(events);
+            } else {
+                frames.peek().events.addAll(events);
+            }
+        }
+
+        private void flush(List<XMLEvent> events) throws XMLStreamException {
+            try {
+                for (XMLEvent event : events) {
+                    write(event);
+                }
+            } catch (IOException e) {
+                throw new XMLStreamException("Unable to write the patched pom", e);
+            }
+        }
+
+        /**
+         * Writes the original text of an event, or serializes a created event. The start tag of an empty element is
+         * only written with the next event, it is reopened if content was inserted in the element.
+         */
+        private void write(XMLEvent event) throws IOException {
+            String text = texts.remove(event);
+            if (emptyElement != null) {
+                String start = emptyElement;
+                emptyElement = null;
+                if (event.isEndElement() && "".equals(text)) {
+                    writer.write(start);
+                    return;
+                }
+                writer.write(start.substring(0, start.length() - 2) + ">");
+            }
+            if (event.isStartElement() && text != null && text.endsWith("/>")) {
+                emptyElement = text;
+            } else if (event.isStartElement() && text == null) {
+                writer.write("<" + name(event.asStartElement().getName()) + ">");
+            } else if (event.isEndElement() && (text == null || text.isEmpty())) {
+                writer.write("</" + name(event.asEndElement().getName()) + ">");
+            } else if (text == null) {
+                writer.write(escape(event.asCharacters().getData()));
+            } else {
+                writer.write(text);
+            }
+        }
+
+        private void discard(List<XMLEvent> events) {
+            for (XMLEvent event : events) {
+                texts.remove(event);
+            }
+        }
+
+        private void close(Frame frame) throws XMLStreamException {
+            boolean keep;
+            switch (frame.kind) {
+                case "dependency":
+                    keep = patchDependency(frame);
+                    break;
+                case "plugin":
+                    keep = patchPlugin(frame);
+                    break;
+                case "resource":
+                    patchResource(frame);
+                    keep = true;
+                    break;
+                default:
+                    patchProfile(frame);
+                    keep = true;
+                    break;
+            }
+            if (keep) {
+                List<XMLEvent> sinkPending = frames.isEmpty() ? pending : frames.peek().pending;
+                add(sinkPending);
+                sinkPending.clear();
+                add(frame.leading);
+                add(frame.events);
+            } else {
+                discard(frame.leading);
+                discard(frame.events);
+            }
+        }
+
+        private boolean patchDependency(Frame frame) {
+            List<XMLEvent> events = frame.events;
+            String g = text(events, child(events, 0, "groupId"));
+            String a = text(events, child(events, 0, "artifactId"));
+            String scope = text(events, child(events, 0, "scope"));
+            if (rules.isExcludedDependency(g, a)) {
+                phase.count("dependenciesRemoved", 1);
+                return false;
+            }
+            if (scope != null && !scope.equalsIgnoreCase("compile")) {
+                return true;
+            }
+
+            int exclusions = child(events, 0, "exclusions");
+            Set<String> existing = new HashSet<>();
+            if (exclusions != -1) {
+                for (int index : children(events, exclusions, "exclusion")) {
+                    existing.add(text(events, child(events, index, "groupId")) + ":"
+                        + text(events, child(events, index, "artifactId")));
+                }
+            }
+            List<XMLEvent> block = new ArrayList<>();
+            for (Exclusion ex : rules.getExclusions()) {
+                if (existing.add(ex.getGroupId() + ":" + ex.getArtifactId())) {
+                    block.add(indent(frame.depth + 1));
+                    block.add(EVENTS.createStartElement("", namespace, "exclusion"));
+                    block.addAll(leaf("groupId", ex.getGroupId(), frame.depth + 2));
+                    block.addAll(leaf("artifactId", ex.getArtifactId(), frame.depth + 2));
+                    block.add(indent(frame.depth + 1));
+                    block.add(EVENTS.createEndElement("", namespace, "exclusion"));
+                    phase.count("exclusionsAdded", 1);
+                }
+            }
+            if (!block.isEmpty()) {
+                if (exclusions == -1) {
+                    insertBeforeEnd(events, 0, wrap("exclusions", block, frame.depth), frame.depth - 1);
+                } else {
+                    insertBeforeEnd(events, exclusions, block, frame.depth);
+                }
+            }
+            return true;
+        }
+
+        private boolean patchPlugin(Frame frame) {
+            List<XMLEvent> events = frame.events;
+            String g = text(events, child(events, 0, "groupId"));
+            String a = text(events, child(events, 0, "artifactId"));
+            if (rules.isExcludedPlugin(g == null ? "org.apache.maven.plugins" : g, a)) {
+                phase.count("pluginsRemoved", 1);
+                return false;
+            }
+            return true;
+        }
+
+        private void patchResource(Frame frame) {
+            List<XMLEvent> events = frame.events;
+            String directory = text(events, child(events, 0, "directory"));
+            if (directory == null || resourceIndex == null) {
+                return;
+            }
+            Set<String> files = resourceIndex.getExcludes(basedir, resolve(directory));
+            int excludes = child(events, 0, "excludes");
+            Set<String> existing = new HashSet<>();
+            if (excludes != -1) {
+                for (int index : children(events, excludes, "exclude")) {
+                    existing.add(text(events, index));
+                }
+            }
+            List<XMLEvent> block = new ArrayList<>();
+            for (String file : files) {
+                if (existing.add(file)) {
+                    block.addAll(leaf("exclude", file, frame.depth + 1));
+                    phase.count("resourceExcludesAdded", 1);
+                }
+            }
+            if (!block.isEmpty()) {
+                if (excludes == -1) {
+                    insertBeforeEnd(events, 0, wrap("excludes", block, frame.depth), frame.depth - 1);
+                } else {
+                    insertBeforeEnd(events, excludes, block, frame.depth);
+                }
+            }
+        }
+
+        private void patchProfile(Frame frame) {
+            List<XMLEvent> events = frame.events;
+            int id = child(events, 0, "id");
+            if (id == -1 || !rules.isActivatedProfile(text(events, id))) {
+                return;
+            }
+            phase.count("profilesActivated", 1);
+            int activation = child(events, 0, "activation");
+            if (activation == -1) {
+                List<XMLEvent> block = new ArrayList<>();
+                block.add(indent(frame.depth));
+                block.add(EVENTS.createStartElement("", namespace, "activation"));
+                block.addAll(leaf("activeByDefault", "true", frame.depth + 1));
+                block.add(indent(frame.depth));
+                block.add(EVENTS.createEndElement("", namespace, "activation"));
+                events.addAll(end(events, id) + 1, block);
+                return;
+            }
+            int active = child(events, activation, "activeByDefault");
+            if (active == -1) {
+                insertBeforeEnd(events, activation, leaf("activeByDefault", "true", frame.depth + 1),
+                    frame.depth);
+            } else {
+                int end = end(events, active);
+                discard(events.subList(active + 1, end));
+                events.subList(active + 1, end).clear();
+                events.add(active + 1, EVENTS.createCharacters("true"));
+            }
+        }
+
+        /**
+         * Creates the resources of the project with their excludes, {@code depth} being the indentation of the
+         * {@code resources} element.
+         */
+        private List<XMLEvent> resourcesBlock(int depth) {
+            List<XMLEvent> block = new ArrayList<>();
+            if (resourceIndex == null || resources.stream()
+                .allMatch(resource -> resourceIndex.getExcludes(basedir, resource.getDirectory()).isEmpty())) {
+                return block;
+            }
+            block.add(indent(depth));
+            block.add(EVENTS.createStartElement("", namespace, "resources"));
+            for (Resource resource : resources) {
+                block.add(indent(depth + 1));
+                block.add(EVENTS.createStartElement("", namespace, "resource"));
+                block.addAll(leaf("directory", relativize(resource.getDirectory()), depth + 2));
+                if (resource.getTargetPath() != null) {
+                    block.addAll(leaf("targetPath", resource.getTargetPath(), depth + 2));
+                }
+                if (resource.isFiltering()) {
+                    block.addAll(leaf("filtering", "true", depth + 2));
+                }
+                block.addAll(list("includes", "include", resource.getIncludes(), depth + 2));
+                Set<String> excludes = new LinkedHashSet<>(resource.getExcludes());
+                excludes.addAll(resourceIndex.getExcludes(basedir, resource.getDirectory()));
+                phase.count("resourceExcludesAdded", excludes.size() - resource.getExcludes().size());
+                block.addAll(list("excludes", "exclude", excludes, depth + 2));
+                block.add(indent(depth + 1));
+                block.add(EVENTS.createEndElement("", namespace, "resource"));
+            }
+            block.add(indent(depth));
+            block.add(EVENTS.createEndElement("", namespace, "resources"));
+            return block;
+        }
+
+        private List<XMLEvent> list(String name, String item, Collection<String> values, int depth) {
+            List<XMLEvent> block = new ArrayList<>();
+            if (values.isEmpty()) {
+                return block;
+            }
+            block.add(indent(depth));
+            block.add(EVENTS.createStartElement("", namespace, name));
+            for (String value : values) {
+                block.addAll(leaf(item, value, depth + 1));
+            }
+            block.add(indent(depth));
+            block.add(EVENTS.createEndElement("", namespace, name));
+            return block;
+        }
+
+        private List<XMLEvent> wrap(String name, List<XMLEvent> content, int depth) {
+            List<XMLEvent> block = new ArrayList<>();
+            block.add(indent(depth));
+            block.add(EVENTS.createStartElement("", namespace, name));
+            block.addAll(content);
+            block.add(indent(depth));
+            block.add(EVENTS.createEndElement("", namespace, name));
+            return block;
+        }
+
+        /**
+         * Creates {@code <name>value</name>} for an element at the given depth (1 for the children of the project).
+         */
+        private List<XMLEvent> leaf(String name, String value, int depth) {
+            return Arrays.asList(indent(depth),
+                EVENTS.createStartElement("", namespace, name),
+                EVENTS.createCharacters(value),
+                EVENTS.createEndElement("", namespace, name));
+        }
+
+        private Characters indent(int depth) {
+            StringBuilder builder = new StringBuilder(newline);
+            for (int i = 0; i < depth; i++) {
+                builder.append(unit == null ? "  " : unit);
+            }
+            return EVENTS.createCharacters(builder.toString());
+        }
+
+        /**
+         * Inserts the events at the end of the element starting at {@code start}, before the whitespace preceding
+         * its end tag. If the end tag is not preceded by whitespace, it is moved on its own line, at the given
+         * indentation.
+         */
+        private void insertBeforeEnd(List<XMLEvent> events, int start, List<XMLEvent> block, int indentation) {
+            int end = end(events, start);
+            int index = end;
+            while (index > start + 1 && isWhitespace(events.get(index - 1))) {
+                index--;
+            }
+            if (index == end) {
+                events.add(end, indent(indentation));
+            }
+            events.addAll(index, block);
+        }
+
+        private String resolve(String directory) {
+            return directory.replace("${project.build.directory}", buildDirectory.getAbsolutePath())
+                .replace("${project.basedir}", basedir.getAbsolutePath())
+                .replace("${basedir}", basedir.getAbsolutePath());
+        }
+
+        private String relativize(String directory) {
+            String base = basedir.getAbsolutePath() + File.separator;
+            String relative = directory.startsWith(base) ? directory.substring(base.length()) : directory;
+            return relative.replace(File.separatorChar, '/');
+        }
+    }
+
+    private static boolean isText(XMLEvent event) {
+        return event.isCharacters() && !event.asCharacters().isCData();
+    }
+
+    private static String name(QName name) {
+        return name.getPrefix().isEmpty() ? name.getLocalPart() : name.getPrefix() + ":" + name.getLocalPart();
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+    private static boolean isWhitespace(XMLEvent event) {
+        return event.isCharacters() && !event.asCharacters().isCData()
+            && event.asCharacters().getData().trim().isEmpty();
+    }
+
+    /**
+     * Finds a direct child of the element starting at {@code parent}.
+     *
+     * @return the index of the child start, -1 if not found
+     */
+    private static int child(List<XMLEvent> events, int parent, String name) {
+        List<Integer> children = children(events, parent, name);
+        return children.isEmpty() ? -1 : children.get(0);
+    }
+
+    private static List<Integer> children(List<XMLEvent> events, int parent, String name) {
+        List<Integer> children = new ArrayList<>();
+        int depth = 0;
+        for (int i = parent; i < events.size(); i++) {
+            XMLEvent event = events.get(i);
+            if (event.isStartElement()) {
+                depth++;
+                if (depth == 2 && event.asStartElement().getName().getLocalPart().equals(name)) {
+                    children.add(i);
+                }
+            } else if (event.isEndElement()) {
+                depth--;
+                if (depth == 0) {
+                    break;
+                }
+            }
+        }
+        return children;
+    }
+
+    /**
+     * @return the index of the end of the element starting at {@code start}
+     */
+    private static int end(List<XMLEvent> events, int start) {
+        int depth = 0;
+        for (int i = start; i < events.size(); i++) {
+            XMLEvent event = events.get(i);
+            if (event.isStartElement()) {
+                depth++;
+            } else if (event.isEndElement() && --depth == 0) {
+                return i;
+            }
+        }
+        return events.size() - 1;
+    }
+
+    private static String text(List<XMLEvent> events, int start) {
+        if (start == -1) {
+            return null;
+        }
+        StringBuilder builder = new StringBuilder();
+        int end = end(events, start);
+        for (int i = start + 1; i < end; i++) {
+            if (events.get(i).isCharacters()) {
+                builder.append(events.get(i).asCharacters().getData());
+            }
+        }
+        return builder.toString().trim();
+    }
+}
@@ -0,0 +1,66 @@
+package me.escoffier.maven;
+
+import org.apache.maven.execution.ProjectDependencyGraph;
+import org.apache.maven.project.DuplicateProjectException;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.project.ProjectSorter;
+import org.codehaus.plexus.util.dag.CycleDetectedException;
+
+import java.util.*;
+
+/**
+ * The dependency graph of the projects built by a nested session, so the builders (including the multithreaded one)
+ * can schedule independent projects in parallel.
+ *
+ * @author <a href="http://escoffier.me">Clement Escoffier</a>
+ */
+public class ReactorDependencyGraph implements ProjectDependencyGraph {
+
+    private final ProjectSorter sorter;
+    private final List<MavenProject> sorted;
+
+    public ReactorDependencyGraph(Collection<MavenProject> projects)
+        throws CycleDetectedException, DuplicateProjectException {
+        this.sorter = new ProjectSorter(projects);
+        this.sorted = Collections.unmodifiableList(sorter.getSortedProjects());
+    }
+
+    @Override
+    public List<MavenProject> getSortedProjects() {
+        return sorted;
+    }
+
+    @Override
+    public List<MavenProject> getDownstreamProjects(MavenProject project, boolean transitive) {
+        return collect(project, transitive, true);
+    }
+
+    @Override
+    public List<MavenProject> getUpstreamProjects(MavenProject project, boolean transitive) {
+        return collect(project, transitive, false);
+    }
+
+    private List<MavenProject> collect(MavenProject project, boolean transitive, boolean downstream) {
+        Set<String> ids = new HashSet<>();
+        Deque<String> toVisit = new ArrayDeque<>();
+        toVisit.add(ProjectSorter.getId(project));
+        while (!toVisit.isEmpty()) {
+            String id = toVisit.poll();
+            List<String> next = downstream ? sorter.getDependents(id) : sorter.getDependencies(id);
+            for (String n : next) {
+                if (ids.add(n) && transitive) {
+                    toVisit.add(n);
+                }
+            }
+        }
+
+        // Keep the build order
+        List<MavenProject> result = new ArrayList<>();
+        for (MavenProject p : sorted) {
+            if (ids.contains(ProjectSorter.getId(p))) {
+                result.add(p);
+            }
+        }
+        return result;
+    }
+}
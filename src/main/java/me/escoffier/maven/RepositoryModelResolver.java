@@ -0,0 +1,92 @@
+package me.escoffier.maven;
+
+import org.apache.maven.model.Parent;
+import org.apache.maven.model.Repository;
+import org.apache.maven.model.building.FileModelSource;
+import org.apache.maven.model.building.ModelSource;
+import org.apache.maven.model.resolution.InvalidRepositoryException;
+import org.apache.maven.model.resolution.ModelResolver;
+import org.apache.maven.model.resolution.UnresolvableModelException;
+import org.apache.maven.repository.internal.ArtifactDescriptorUtils;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResolutionException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Resolves parent and imported POMs from the repositories of the current session. This is the counterpart of the
+ * (package private) resolver used by the Maven project builder, used when the effective model is built directly
+ * through the model builder.
+ *
+ * @author <a href="http://escoffier.me">Clement Escoffier</a>
+ */
+public class RepositoryModelResolver implements ModelResolver {
+
+    private final RepositorySystem repositorySystem;
+    private final RepositorySystemSession session;
+    private List<RemoteRepository> repositories;
+
+    public RepositoryModelResolver(RepositorySystem repositorySystem, RepositorySystemSession session,
+                                   List<RemoteRepository> repositories) {
+        this.repositorySystem = repositorySystem;
+        this.session = session;
+        this.repositories = repositories == null ? Collections.emptyList() : new ArrayList<>(repositories);
+    }
+
+    @Override
+    public ModelSource resolveModel(String groupId, String artifactId, String version)
+        throws UnresolvableModelException {
+        Artifact artifact = new DefaultArtifact(groupId, artifactId, "", "pom", version);
+        try {
+            ArtifactRequest request = new ArtifactRequest(artifact, repositories, null);
+            artifact = repositorySystem.resolveArtifact(session, request).getArtifact();
+        } catch (ArtifactResolutionException e) {
+            throw new UnresolvableModelException(e.getMessage(), groupId, artifactId, version, e);
+        }
+        return new FileModelSource(artifact.getFile());
+    }
+
+    @Override
+    public ModelSource resolveModel(Parent parent) throws UnresolvableModelException {
+        return resolveModel(parent.getGroupId(), parent.getArtifactId(), parent.getVersion());
+    }
+
+    @Override
+    public void addRepository(Repository repository) throws InvalidRepositoryException {
+        addRepository(repository, false);
+    }
+
+    @Override
+    public void addRepository(Repository repository, boolean replace) throws InvalidRepositoryException {
+        List<RemoteRepository> copy = new ArrayList<>(repositories.size() + 1);
+        for (RemoteRepository repo : repositories) {
+            if (repo.getId().equals(repository.getId())) {
+                if (!replace) {
+                    return;
+                }
+            } else {
+                copy.add(repo);
+            }
+        }
+
+        try {
+            copy.add(ArtifactDescriptorUtils.toRemoteRepository(repository));
+        } catch (RuntimeException e) {
+            throw new InvalidRepositoryException("Invalid repository " + repository.getId(), repository, e);
+        }
+        // Apply mirrors, proxies and authentication from the session
+        repositories = repositorySystem.newResolutionRepositories(session, copy);
+    }
+
+    @Override
+    public ModelResolver newCopy() {
+        return new RepositoryModelResolver(repositorySystem, session, repositories);
+    }
+}
@@ -0,0 +1,275 @@
+package me.escoffier.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+
+/**
+ * The resource files excluded by the {@code excluded-resources} patterns, indexed by resource root. Each root is
+ * scanned once, and the matched files are recorded with their exact path, so they can be used as excludes without
+ * evaluating the patterns again. The patterns are still used for the roots whose content is not known when they are
+ * scanned, see {@link #getExcludes(File, String)}.
+ *
+ * @author <a href="http://escoffier.me">Clement Escoffier</a>
+ */
+public class ResourceIndex {
+
+    private final Map<String, Root> roots = new TreeMap<>();
+
+    private ResourceIndex() {
+        // Use scan
+    }
+
+    /**
+     * Scans the given resource roots.
+     *
+     * @param matcher     the compiled patterns
+     * @param basedir     the project root
+     * @param directories the resource roots, absolute or relative to the project root
+     * @return the index
+     * @throws IOException if a root cannot be scanned
+     */
+    public static ResourceIndex scan(ResourceMatcher matcher, File basedir, Collection<String> directories)
+        throws IOException {
+        return scan(matcher, basedir, null, directories);
+    }
+
+    /**
+     * Scans the given resource roots.
+     *
+     * @param matcher        the compiled patterns
+     * @param basedir        the project root
+     * @param buildDirectory the build directory, whose resource roots are generated during the build, {@code null}
+     *                       if unknown
+     * @param directories    the resource roots, absolute or relative to the project root
+     * @return the index
+     * @throws IOException if a root cannot be scanned
+     */
+    public static ResourceIndex scan(ResourceMatcher matcher, File basedir, File buildDirectory,
+                                     Collection<String> directories) throws IOException {
+        ResourceIndex index = new ResourceIndex();
+        Path build = buildDirectory == null ? null : toPath(basedir, buildDirectory.getPath());
+        for (String directory : directories) {
+            Path path = toPath(basedir, directory);
+            String key = path.toString();
+            if (index.roots.containsKey(key)) {
+                continue;
+            }
+            Root root = new Root(relativize(basedir, path));
+            root.patterns.addAll(matcher.getPatterns(root.relative));
+            // A missing root or a root of the build directory is filled by the build, after this scan
+            root.generated = !Files.isDirectory(path) || (build != null && path.startsWith(build));
+            if (!matcher.isEmpty() && Files.isDirectory(path)) {
+                scan(matcher, path, root);
+            }
+            index.roots.put(key, root);
+        }
+        return index;
+    }
+
+    /**
+     * Reads the index written by {@link #write(File)}. The byte counts and the patterns are not recorded, so the
+     * index only contains the excluded files.
+     *
+     * @param basedir  the project root
+     * @param manifest the manifest file
+     * @return the index, empty if the manifest does not exist
+     * @throws IOException if the manifest cannot be read
+     */
+    public static ResourceIndex read(File basedir, File manifest) throws IOException {
+        ResourceIndex index = new ResourceIndex();
+        if (!manifest.isFile()) {
+            return index;
+        }
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(manifest.toPath(), StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        for (String relative : properties.stringPropertyNames()) {
+            Root root = new Root(relative);
+            root.files.addAll(split(properties.getProperty(relative)));
+            index.roots.put(toPath(basedir, relative).toString(), root);
+        }
+        return index;
+    }
+
+    private static void scan(ResourceMatcher matcher, Path path, Root root) throws IOException {
+        Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                String relative = path.relativize(file).toString().replace(File.separatorChar, '/');
+                if (attributes.isRegularFile() && matcher.matches(root.relative, relative)) {
+                    root.files.add(relative);
+                    root.bytes += attributes.size();
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static Path toPath(File basedir, String directory) {
+        File file = new File(directory);
+        if (!file.isAbsolute()) {
+            file = new File(basedir, directory);
+        }
+        return file.getAbsoluteFile().toPath().normalize();
+    }
+
+    private static String relativize(File basedir, Path path) {
+        Path base = basedir.getAbsoluteFile().toPath().normalize();
+        if (path.startsWith(base)) {
+            return base.relativize(path).toString().replace(File.separatorChar, '/');
+        }
+        return path.toString().replace(File.separatorChar, '/');
+    }
+
+    /**
+     * Gets the excluded files of a resource root.
+     *
+     * @param basedir   the project root
+     * @param directory the resource root, absolute or relative to the project root
+     * @return the excluded files, relative to the root, empty if the root has not been scanned
+     */
+    public Set<String> getExcludedFiles(File basedir, String directory) {
+        Root root = roots.get(toPath(basedir, directory).toString());
+        return root == null ? Collections.emptySet() : Collections.unmodifiableSet(root.files);
+    }
+
+    /**
+     * Gets the excludes of a resource root: the exact paths of its excluded files, and the patterns applying to the
+     * root when its content is not known from the scan (generated or missing root) or when a file cannot be excluded
+     * by its exact path (name containing a comma or a wildcard). A scanned root without excluded file has no
+     * excludes.
+     *
+     * @param basedir   the project root
+     * @param directory the resource root, absolute or relative to the project root
+     * @return the excludes, relative to the root, empty if the root has not been scanned
+     */
+    public Set<String> getExcludes(File basedir, String directory) {
+        Root root = roots.get(toPath(basedir, directory).toString());
+        return root == null ? Collections.emptySet() : root.getExcludes();
+    }
+
+    /**
+     * @return the number of excluded files
+     */
+    public int getFileCount() {
+        return roots.values().stream().mapToInt(root -> root.files.size()).sum();
+    }
+
+    /**
+     * @return the size of the excluded files
+     */
+    public long getByteCount() {
+        return roots.values().stream().mapToLong(root -> root.bytes).sum();
+    }
+
+    /**
+     * @return a stable description of the excluded files, used to detect changes
+     */
+    public String describe() {
+        StringBuilder builder = new StringBuilder();
+        for (Root root : roots.values()) {
+            builder.append(root.relative).append('=').append(join(root.files)).append('\n');
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Writes the manifest of the excluded files, one entry per root, keyed by the root relative to the project root.
+     *
+     * @param manifest the manifest file
+     * @throws IOException if the manifest cannot be written
+     */
+    public void write(File manifest) throws IOException {
+        File dir = manifest.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Unable to create " + dir.getAbsolutePath());
+        }
+        StringBuilder builder = new StringBuilder("# Excluded resources, relative to their resource root\n");
+        for (Root root : roots.values()) {
+            builder.append("# ").append(root.files.size()).append(" file(s), ").append(root.bytes)
+                .append(" byte(s)\n");
+            builder.append(escape(root.relative)).append('=').append(escape(join(root.files)))
+                .append('\n');
+        }
+        Files.write(manifest.toPath(), builder.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Joins the files with commas, escaping the commas and backslashes of the file names.
+     */
+    private static String join(Collection<String> files) {
+        StringJoiner joiner = new StringJoiner(",");
+        for (String file : files) {
+            joiner.add(file.replace("\\", "\\\\").replace(",", "\\,"));
+        }
+        return joiner.toString();
+    }
+
+    private static List<String> split(String value) {
+        List<String> files = new ArrayList<>();
+        StringBuilder file = new StringBuilder();
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                file.append(value.charAt(++i));
+            } else if (c == ',') {
+                if (file.length() > 0) {
+                    files.add(file.toString());
+                }
+                file.setLength(0);
+            } else {
+                file.append(c);
+            }
+        }
+        if (file.length() > 0) {
+            files.add(file.toString());
+        }
+        return files;
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace(" ", "\\ ").replace("=", "\\=").replace(":", "\\:");
+    }
+
+    private static final class Root {
+        private final String relative;
+        private final SortedSet<String> files = new TreeSet<>();
+        private final List<String> patterns = new ArrayList<>();
+        private boolean generated;
+        private long bytes;
+
+        private Set<String> excludes;
+
+        private Root(String relative) {
+            this.relative = relative;
+        }
+
+        /**
+         * Computed once, the index is not modified after the scan.
+         */
+        private synchronized Set<String> getExcludes() {
+            if (excludes == null) {
+                Set<String> set = new LinkedHashSet<>();
+                boolean usePatterns = generated;
+                for (String file : files) {
+                    if (file.indexOf(',') == -1 && file.indexOf('*') == -1 && file.indexOf('?') == -1) {
+                        set.add(file);
+                    } else {
+                        usePatterns = true;
+                    }
+                }
+                if (usePatterns) {
+                    set.addAll(patterns);
+                }
+                excludes = Collections.unmodifiableSet(set);
+            }
+            return excludes;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package me.escoffier.maven;
+
+import java.io.File;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Matches resource paths against the {@code excluded-resources} patterns. The patterns are relative to the project
+ * root (such as {@code src/main/resources/${module}/*.rb}), so they are rebased on the resource roots they point
+ * into: {@code ${module}/*.rb} relative to {@code src/main/resources}. Patterns that do not point into a resource
+ * root are considered relative to every root. The patterns use the Ant syntax ({@code *}, {@code ?} and
+ * {@code **}), and are compiled into a single regular expression per root.
+ *
+ * @author <a href="http://escoffier.me">Clement Escoffier</a>
+ */
+public final class ResourceMatcher {
+
+    private final Map<String, List<String>> patterns;
+    private final Map<String, Pattern> roots;
+    private final Pattern any;
+
+    private ResourceMatcher(Map<String, List<String>> patterns) {
+        this.patterns = patterns;
+        this.roots = new HashMap<>();
+        for (Map.Entry<String, List<String>> entry : patterns.entrySet()) {
+            List<String> list = new ArrayList<>(entry.getValue());
+            if (!entry.getKey().isEmpty() && patterns.containsKey("")) {
+                list.addAll(patterns.get(""));
+            }
+            roots.put(entry.getKey(), toRegex(list));
+        }
+        List<String> all = new ArrayList<>();
+        patterns.values().forEach(all::addAll);
+        this.any = toRegex(all);
+    }
+
+    /**
+     * Compiles the given patterns.
+     *
+     * @param patterns  the patterns, relative to the project root
+     * @param module    the module name, replacing {@code ${module}}
+     * @param basedir   the project root
+     * @param resources the resource roots, absolute or relative to the project root
+     * @return the matcher
+     */
+    public static ResourceMatcher compile(Collection<String> patterns, String module, File basedir,
+                                          Collection<String> resources) {
+        List<String> rootPaths = new ArrayList<>();
+        for (String resource : resources) {
+            String relative = relativize(basedir, resource);
+            if (relative != null && !relative.isEmpty()) {
+                rootPaths.add(relative);
+            }
+        }
+        // The deepest roots first, so nested roots get the most specific patterns
+        rootPaths.sort(Comparator.comparingInt(String::length).reversed());
+
+        Map<String, List<String>> compiled = new LinkedHashMap<>();
+        for (String pattern : patterns) {
+            String p = normalize(module == null ? pattern : pattern.replace("${module}", module));
+            if (p.isEmpty()) {
+                continue;
+            }
+            String root = "";
+            for (String candidate : rootPaths) {
+                if (p.startsWith(candidate + "/")) {
+                    root = candidate;
+                    p = p.substring(candidate.length() + 1);
+                    break;
+                }
+            }
+            compiled.computeIfAbsent(root, k -> new ArrayList<>()).add(p);
+        }
+        return new ResourceMatcher(compiled);
+    }
+
+    private static String relativize(File basedir, String resource) {
+        File file = new File(resource);
+        if (!file.isAbsolute()) {
+            return normalize(resource);
+        }
+        String base = basedir.getAbsoluteFile().toPath().normalize().toString();
+        String path = file.toPath().normalize().toString();
+        if (path.equals(base)) {
+            return "";
+        }
+        if (path.startsWith(base + File.separator)) {
+            return normalize(path.substring(base.length() + 1));
+        }
+        return null;
+    }
+
+    private static String normalize(String path) {
+        String p = path.trim().replace('\\', '/');
+        while (p.startsWith("./")) {
+            p = p.substring(2);
+        }
+        while (p.startsWith("/")) {
+            p = p.substring(1);
+        }
+        if (p.endsWith("/")) {
+            p = p + "**";
+        }
+        return p;
+    }
+
+    private static Pattern toRegex(List<String> globs) {
+        if (globs.isEmpty()) {
+            return null;
+        }
+        StringJoiner regex = new StringJoiner("|");
+        for (String glob : globs) {
+            regex.add("(?:" + toRegex(glob) + ")");
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+    private static String toRegex(String glob) {
+        StringBuilder builder = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+        int i = 0;
+        while (i < glob.length()) {
+            char c = glob.charAt(i);
+            if (c == '*' || c == '?') {
+                if (literal.length() > 0) {
+                    builder.append(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                }
+                if (glob.startsWith("**/", i)) {
+                    builder.append("(?:.*/)?");
+                    i += 3;
+                } else if (glob.startsWith("**", i)) {
+                    builder.append(".*");
+                    i += 2;
+                } else {
+                    builder.append(c == '*' ? "[^/]*" : "[^/]");
+                    i++;
+                }
+            } else {
+                literal.append(c);
+                i++;
+            }
+        }
+        if (literal.length() > 0) {
+            builder.append(Pattern.quote(literal.toString()));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Checks whether a path is excluded, regardless of its resource root. This is used for archives, in which the
+     * content of all the resource roots is merged.
+     *
+     * @param path the path, relative to the resource root, using {@code /} as separator
+     * @return {@code true} if the path is excluded
+     */
+    public boolean matches(String path) {
+        return any != null && any.matcher(path).matches();
+    }
+
+    /**
+     * Checks whether a path of the given resource root is excluded.
+     *
+     * @param root the resource root, relative to the project root, using {@code /} as separator
+     * @param path the path, relative to the resource root, using {@code /} as separator
+     * @return {@code true} if the path is excluded
+     */
+    public boolean matches(String root, String path) {
+        Pattern pattern = roots.containsKey(root) ? roots.get(root) : roots.get("");
+        return pattern != null && pattern.matcher(path).matches();
+    }
+
+    /**
+     * @return the patterns rebased on their resource root, indexed by root ({@code ""} for the patterns applying to
+     * every root)
+     */
+    public Map<String, List<String>> getPatterns() {
+        return Collections.unmodifiableMap(patterns);
+    }
+
+    /**
+     * @param root the resource root, relative to the project root, using {@code /} as separator
+     * @return the patterns applying to the given root, relative to the root
+     */
+    public List<String> getPatterns(String root) {
+        List<String> list = new ArrayList<>();
+        if (!root.isEmpty() && patterns.containsKey(root)) {
+            list.addAll(patterns.get(root));
+        }
+        if (patterns.containsKey("")) {
+            list.addAll(patterns.get(""));
+        }
+        return list;
+    }
+
+    public boolean isEmpty() {
+        return any == null;
+    }
+}
@@ -0,0 +1,100 @@
+package me.escoffier.maven;
+
+import org.apache.maven.model.Exclusion;
+import org.apache.maven.plugin.MojoExecutionException;
+
+import java.util.*;
+
+/**
+ * The immutable, compiled form of the exclusion rules of a {@link Configuration}. All the dependency, exclusion and
+ * plugin decisions are made by this class.
+ *
+ * @author <a href="http://escoffier.me">Clement Escoffier</a>
+ */
+public final class RuleSet {
+
+    private final CoordinateMatcher dependencies;
+    private final CoordinateMatcher plugins;
+    private final List<Exclusion> exclusions;
+    private final List<String> partialPatterns;
+    private final Set<String> profiles;
+
+    private RuleSet(CoordinateMatcher dependencies, CoordinateMatcher plugins, List<Exclusion> exclusions,
+                    List<String> partialPatterns, Set<String> profiles) {
+        this.dependencies = dependencies;
+        this.plugins = plugins;
+        this.exclusions = exclusions;
+        this.partialPatterns = partialPatterns;
+        this.profiles = profiles;
+    }
+
+    /**
+     * Compiles the rules of the given configuration.
+     *
+     * @param configuration the configuration
+     * @return the rule set
+     * @throws MojoExecutionException if a pattern is invalid
+     */
+    public static RuleSet compile(Configuration configuration) throws MojoExecutionException {
+        List<Exclusion> exclusions = new ArrayList<>();
+        List<String> partial = new ArrayList<>();
+        for (String pattern : configuration.getExcludedDependencies()) {
+            String[] segments = pattern.trim().split(":");
+            if (segments.length != 2) {
+                throw new MojoExecutionException("Invalid excluded dependency '" + pattern
+                    + "', expected groupId:artifactId");
+            }
+            // Exclusions only support exact values or a single '*' wildcard
+            if (isExclusionSegment(segments[0]) && isExclusionSegment(segments[1])) {
+                Exclusion exclusion = new Exclusion();
+                exclusion.setGroupId(segments[0]);
+                exclusion.setArtifactId(segments[1]);
+                exclusions.add(exclusion);
+            } else {
+                partial.add(pattern);
+            }
+        }
+
+        try {
+            return new RuleSet(CoordinateMatcher.compile(configuration.getExcludedDependencies()),
+                CoordinateMatcher.compile(configuration.getExcludedPlugins()),
+                Collections.unmodifiableList(exclusions),
+                Collections.unmodifiableList(partial),
+                Collections.unmodifiableSet(new HashSet<>(configuration.getProfiles())));
+        } catch (IllegalArgumentException e) {
+            throw new MojoExecutionException("Invalid sanitizer configuration: " + e.getMessage(), e);
+        }
+    }
+
+    private static boolean isExclusionSegment(String segment) {
+        return "*".equals(segment) || !segment.contains("*");
+    }
+
+    public boolean isExcludedDependency(String groupId, String artifactId) {
+        return dependencies.matches(groupId, artifactId);
+    }
+
+    public boolean isExcludedPlugin(String groupId, String artifactId) {
+        return plugins.matches(groupId, artifactId);
+    }
+
+    public boolean isActivatedProfile(String id) {
+        return profiles.contains(id);
+    }
+
+    /**
+     * @return the exclusions to add to the dependencies, each returned instance must be cloned before being added to
+     * a model
+     */
+    public List<Exclusion> getExclusions() {
+        return exclusions;
+    }
+
+    /**
+     * @return the excluded dependency patterns that cannot be expressed as pom exclusions (such as
+     * {@code *:vertx-lang-*}), they only apply to direct dependencies
+     */
+    public List<String> getPartialPatterns() {
+        return partialPatterns;
+    }
+}
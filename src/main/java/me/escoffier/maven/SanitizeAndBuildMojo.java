@@ -0,0 +1,51 @@
+package me.escoffier.maven;
+
+import org.apache.maven.model.Model;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Generates the sanitized pom and builds it, in a single goal. The effective model computed during the sanitization
+ * is handed to the nested build, so the sanitized pom is not read from the disk again. The model is still serialized
+ * in memory and built again by the project builder, as the written pom would be (profile, lifecycle and plugin
+ * injection, repositories and project artifact), so only the write and the read of the pom are saved, not the model
+ * building. When the sanitized pom is up to date, it is loaded from the disk as done by
+ * {@code build-with-sanitized-pom}.
+ *
+ * @author <a href="http://escoffier.me">Clement Escoffier</a>
+ */
+@Mojo(name = "sanitize-and-build", threadSafe = true)
+public class SanitizeAndBuildMojo extends SanitizeMojo {
+
+    @Parameter(property = "sanitizer.phase", defaultValue = "install")
+    private String phase;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        Metrics metrics = createMetrics(project, "sanitize-and-build");
+        try {
+            Map<File, Model> models = generate(metrics);
+            if (models.size() > 1) {
+                throw new MojoExecutionException("sanitize-and-build builds a single sanitized pom, but "
+                    + models.size() + " variants are configured, build them with build-with-sanitized-pom");
+            }
+            Model model = models.get(pom);
+            MavenBuildExecutor executor = createBuildExecutor(metrics);
+            Properties props = prepareBuild(Collections.singletonList(project), executor);
+            if (model == null) {
+                executor.execute(pom, phase, props);
+            } else {
+                executor.build(Collections.singletonList(executor.createProject(model, pom, props)), phase, props);
+            }
+        } finally {
+            writeReport(project, "sanitize-and-build", metrics);
+        }
+    }
+}
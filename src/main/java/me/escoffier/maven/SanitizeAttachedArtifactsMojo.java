@@ -0,0 +1,134 @@
+package me.escoffier.maven;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Removes the excluded resources from the artifacts attached to the project (sources, javadoc, test-jar, docs
+ * zips...). The archives are sanitized concurrently, each one in a single streaming pass. By default the artifacts
+ * are sanitized in place, so the sanitized archives are installed and deployed instead of the original ones.
+ *
+ * @author <a href="http://escoffier.me">Clement Escoffier</a>
+ */
+@Mojo(name = "sanitize-attached-artifacts", threadSafe = true)
+public class SanitizeAttachedArtifactsMojo extends AbstractSanitizerMojo {
+
+    private static final Set<String> ARCHIVES = new HashSet<>(Arrays.asList("jar", "zip", "war", "ear"));
+
+    @Parameter(property = "sanitizer.module")
+    private String module;
+
+    @Parameter(property = "sanitizer.config")
+    private File config;
+
+    /**
+     * The number of archives sanitized concurrently. The work is mostly I/O, so it does not need to match the number
+     * of processors.
+     */
+    @Parameter(property = "sanitizer.ioThreads", defaultValue = "4")
+    private int ioThreads;
+
+    /**
+     * The directory in which the sanitized archives are written. If not set, the attached artifacts are sanitized
+     * in place.
+     */
+    @Parameter(property = "sanitizer.attachedOutputDirectory")
+    private File outputDirectory;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        List<Artifact> artifacts = new ArrayList<>();
+        for (Artifact artifact : project.getAttachedArtifacts()) {
+            File file = artifact.getFile();
+            if (file == null || !file.isFile()) {
+                getLog().warn("The attached artifact " + artifact.getId() + " has no file, skipping");
+            } else if (!isArchive(file)) {
+                getLog().debug("The attached artifact " + artifact.getId() + " is not an archive, skipping");
+            } else {
+                artifacts.add(artifact);
+            }
+        }
+        if (artifacts.isEmpty()) {
+            getLog().info("No attached archive to sanitize");
+            return;
+        }
+
+        Metrics metrics = createMetrics(project, "sanitize-attached-artifacts");
+        try {
+            Configuration configuration;
+            try (Metrics.Phase ignored = metrics.start("configuration")) {
+                ParsedConfiguration parsed = ConfigurationLoader.get(repoSession,
+                    ConfigurationLoader.locate(config, project), getLog());
+                configuration = ConfigurationLoader.load(parsed, project, module, getLog());
+            }
+            sanitize(artifacts, new ArchiveSanitizer().setMatcher(createResourceMatcher(configuration)), metrics);
+        } finally {
+            writeReport(project, "sanitize-attached-artifacts", metrics);
+        }
+    }
+
+    private void sanitize(List<Artifact> artifacts, ArchiveSanitizer sanitizer, Metrics metrics)
+        throws MojoExecutionException {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(ioThreads, artifacts.size())),
+            new ThreadFactoryBuilder().setNameFormat("sanitizer-io-%d").setDaemon(true).build());
+        Map<Artifact, Future<ArchiveSanitizer.Result>> results = new LinkedHashMap<>();
+        try {
+            for (Artifact artifact : artifacts) {
+                results.put(artifact, pool.submit(() -> {
+                    File input = artifact.getFile();
+                    File output = outputDirectory == null ? input : new File(outputDirectory, input.getName());
+                    try (Metrics.Phase phase = metrics.start(artifact.getId())) {
+                        ArchiveSanitizer.Result result = sanitizer.sanitize(input, output);
+                        phase.count("entriesKept", result.getKept())
+                            .count("entriesRemoved", result.getRemoved())
+                            .count("bytesRemoved", result.getRemovedBytes());
+                        return result;
+                    }
+                }));
+            }
+
+            List<String> failures = new ArrayList<>();
+            int removed = 0;
+            long bytes = 0;
+            for (Map.Entry<Artifact, Future<ArchiveSanitizer.Result>> entry : results.entrySet()) {
+                try {
+                    ArchiveSanitizer.Result result = entry.getValue().get();
+                    getLog().info(entry.getKey().getId() + " sanitized, " + result.getRemoved()
+                        + " excluded resource(s) removed (" + result.getRemovedBytes() + " bytes)");
+                    removed += result.getRemoved();
+                    bytes += result.getRemovedBytes();
+                } catch (ExecutionException e) {
+                    getLog().error("Unable to sanitize " + entry.getKey().getId(), e.getCause());
+                    failures.add(entry.getKey().getId());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new MojoExecutionException("Interrupted while sanitizing the attached artifacts", e);
+                }
+            }
+            getLog().info(results.size() + " attached artifact(s) sanitized, " + removed
+                + " excluded resource(s) removed (" + bytes + " bytes)");
+            if (!failures.isEmpty()) {
+                throw new MojoExecutionException("Unable to sanitize " + failures);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static boolean isArchive(File file) {
+        String name = file.getName();
+        int index = name.lastIndexOf('.');
+        return index != -1 && ARCHIVES.contains(name.substring(index + 1).toLowerCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,208 @@
+package me.escoffier.maven;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Generates the sanitized pom of a set of independent projects, listed in a manifest, from a single invocation. The
+ * projects do not need to be part of the same reactor: they are loaded from their directories, and sanitized
+ * concurrently. They share the container, the repository session, the parsed configurations and the cache of the
+ * parent and imported models. A project failing to load or to be sanitized does not stop the others, the failures
+ * are reported at the end. When the configuration of a project declares variants, a sanitized pom is generated per
+ * variant, as done by {@code generate-sanitized-pom}.
+ * <p>
+ * The manifest lists a project directory (or pom file) per line, relative to the manifest directory. Empty lines and
+ * lines starting with {@code #} are ignored.
+ *
+ * @author <a href="http://escoffier.me">Clement Escoffier</a>
+ */
+@Mojo(name = "generate-sanitized-poms-batch", aggregator = true, requiresProject = false,
+    threadSafe = true)
+public class SanitizeBatchMojo extends AbstractSanitizerMojo {
+
+    private static final String GOAL = "generate-sanitized-poms-batch";
+
+    /**
+     * The manifest listing the projects to sanitize.
+     */
+    @Parameter(property = "sanitizer.manifest", required = true)
+    private File manifest;
+
+    /**
+     * The configuration used by all the projects. If not set, each project uses its {@code sanitizer-config.yml}
+     * file, or the default configuration.
+     */
+    @Parameter(property = "sanitizer.config")
+    private File config;
+
+    /**
+     * Whether the generation is skipped when none of the inputs have changed since the last execution.
+     */
+    @Parameter(property = "sanitizer.incremental", defaultValue = "true")
+    private boolean incremental;
+
+    /**
+     * The number of projects sanitized concurrently, the number of available processors if not set.
+     */
+    @Parameter(property = "sanitizer.threads", defaultValue = "0")
+    private int threads;
+
+    @Parameter(defaultValue = "${plugin.version}", readonly = true)
+    private String pluginVersion;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        List<File> poms = readManifest();
+        if (poms.isEmpty()) {
+            getLog().warn("No project listed in " + manifest.getAbsolutePath());
+            return;
+        }
+
+        EffectiveModelBuilder builder = createEffectiveModelBuilder();
+        int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(size, poms.size()),
+            new ThreadFactoryBuilder().setNameFormat("sanitizer-batch-%d").setDaemon(true).build());
+
+        Map<File, Future<List<Boolean>>> results = new LinkedHashMap<>();
+        try {
+            for (File pom : poms) {
+                results.put(pom, pool.submit(() -> sanitize(pom, builder)));
+            }
+
+            List<String> failures = new ArrayList<>();
+            int generated = 0;
+            int unchanged = 0;
+            for (Map.Entry<File, Future<List<Boolean>>> entry : results.entrySet()) {
+                try {
+                    for (boolean written : entry.getValue().get()) {
+                        if (written) {
+                            generated++;
+                        } else {
+                            unchanged++;
+                        }
+                    }
+                } catch (ExecutionException e) {
+                    getLog().error("Unable to sanitize " + entry.getKey().getParentFile().getAbsolutePath(),
+                        e.getCause());
+                    failures.add(entry.getKey().getParentFile().getName());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new MojoExecutionException("Interrupted while sanitizing the projects", e);
+                }
+            }
+            getLog().info(generated + " sanitized pom(s) written, " + unchanged + " up to date or unchanged, "
+                + failures.size() + " failure(s)");
+            if (!failures.isEmpty()) {
+                throw new MojoExecutionException("Unable to sanitize " + failures);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * @return the poms of the projects listed in the manifest
+     */
+    private List<File> readManifest() throws MojoExecutionException {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(manifest.toPath(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to read the manifest " + manifest.getAbsolutePath(), e);
+        }
+        File base = manifest.getAbsoluteFile().getParentFile();
+        Set<File> poms = new LinkedHashSet<>();
+        for (String line : lines) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            File file = new File(line);
+            if (!file.isAbsolute()) {
+                file = new File(base, line);
+            }
+            if (file.isDirectory()) {
+                file = new File(file, "pom.xml");
+            }
+            if (!file.isFile()) {
+                throw new MojoExecutionException("No pom found for " + line + " listed in "
+                    + manifest.getAbsolutePath());
+            }
+            poms.add(file.getAbsoluteFile());
+        }
+        return new ArrayList<>(poms);
+    }
+
+    /**
+     * @return whether each sanitized pom of the project has been written, one per variant
+     */
+    private List<Boolean> sanitize(File file, EffectiveModelBuilder builder) throws MojoExecutionException {
+        MavenProject module = loadProject(file);
+        Metrics metrics = createMetrics(module, GOAL);
+        try {
+            ParsedConfiguration parsed;
+            try (Metrics.Phase ignored = metrics.start("configuration")) {
+                parsed = ConfigurationLoader.get(repoSession, ConfigurationLoader.locate(config, module), getLog());
+            }
+            Configuration configuration;
+            try (Metrics.Phase ignored = metrics.start("module-detection")) {
+                configuration = ConfigurationLoader.load(parsed, module, null, getLog());
+            }
+            File output = new File(module.getBasedir(), pom.getName());
+            Sanitizer sanitizer = createSanitizer(module, configuration, parsed.getHash(), null, output, builder,
+                metrics);
+            if (parsed.getVariants().isEmpty()) {
+                return Collections.singletonList(sanitizer.sanitize());
+            }
+
+            // The variants of a project are sanitized sequentially, the projects are sanitized concurrently
+            SharedEffectiveModel shared = new SharedEffectiveModel(sanitizer);
+            List<Boolean> written = new ArrayList<>();
+            for (Map.Entry<String, ParsedConfiguration> entry : parsed.getVariants().entrySet()) {
+                Configuration variant = entry.getValue().toConfiguration(module)
+                    .setModuleName(configuration.getModuleName());
+                written.add(createSanitizer(module, variant, parsed.getHash(), entry.getKey(),
+                    getVariantPom(output, entry.getKey()), builder, metrics).setSharedModel(shared).sanitize());
+            }
+            return written;
+        } finally {
+            writeReport(module, GOAL, metrics);
+        }
+    }
+
+    private Sanitizer createSanitizer(MavenProject module, Configuration configuration, String hash, String variant,
+                                      File output, EffectiveModelBuilder builder, Metrics metrics)
+        throws MojoExecutionException {
+        return new Sanitizer()
+            .setProject(module)
+            .setSession(session)
+            .setConfiguration(configuration, hash)
+            .setEffectiveModelBuilder(builder)
+            .setDependencyGraphAnalyzer(graphExclusions ? createDependencyGraphAnalyzer() : null)
+            .setOutput(output)
+            .setVariant(variant)
+            .setIncremental(incremental)
+            .setPatch(isPatchWriter())
+            .setParameters("module=null,config=" + config + ",pom=" + output
+                + ",graphExclusions=" + graphExclusions + ",lightweight=" + lightweight
+                + ",writer=" + writer + ",variant=" + variant)
+            .setPluginVersion(pluginVersion)
+            .setLogPrefix("[" + module.getArtifactId() + (variant == null ? "" : "/" + variant) + "] ")
+            .setMetrics(metrics)
+            .setLog(getLog());
+    }
+}
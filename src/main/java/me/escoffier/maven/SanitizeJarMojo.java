@@ -0,0 +1,96 @@
+package me.escoffier.maven;
+
+import org.apache.maven.model.Model;
+import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Sanitizes the jar built from the original pom, instead of building the sanitized pom: the excluded resources are
+ * removed from the jar and the sanitized pom is embedded under {@code META-INF/maven}. The other entries are copied
+ * without being recompressed. The sanitized pom must have been generated by {@code generate-sanitized-pom}.
+ *
+ * @author <a href="http://escoffier.me">Clement Escoffier</a>
+ */
+@Mojo(name = "sanitize-jar", threadSafe = true)
+public class SanitizeJarMojo extends AbstractSanitizerMojo {
+
+    @Parameter(property = "sanitizer.module")
+    private String module;
+
+    @Parameter(property = "sanitizer.config")
+    private File config;
+
+    /**
+     * The jar to sanitize.
+     */
+    @Parameter(property = "sanitizer.jar", defaultValue = "${project.build.directory}/${project.build.finalName}.jar")
+    private File jar;
+
+    /**
+     * The sanitized jar, it can be the same file as the jar to sanitize.
+     */
+    @Parameter(property = "sanitizer.sanitizedJar",
+        defaultValue = "${project.build.directory}/${project.build.finalName}-sanitized.jar")
+    private File sanitizedJar;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if (!jar.isFile()) {
+            throw new MojoExecutionException("Unable to find the jar file: " + jar.getAbsolutePath());
+        }
+        if (!pom.isFile()) {
+            throw new MojoExecutionException("Unable to find the sanitized pom file: " + pom.getAbsolutePath()
+                + ", run generate-sanitized-pom first");
+        }
+
+        Metrics metrics = createMetrics(project, "sanitize-jar");
+        try {
+            Configuration configuration;
+            try (Metrics.Phase ignored = metrics.start("configuration")) {
+                ParsedConfiguration parsed = ConfigurationLoader.get(repoSession,
+                    ConfigurationLoader.locate(config, project), getLog());
+                configuration = ConfigurationLoader.load(parsed, project, module, getLog());
+            }
+
+            try (Metrics.Phase phase = metrics.start("sanitize-jar")) {
+                ArchiveSanitizer.Result result = createArchiveSanitizer(configuration).sanitize(jar, sanitizedJar);
+                phase.count("entriesKept", result.getKept())
+                    .count("entriesRemoved", result.getRemoved())
+                    .count("bytesRemoved", result.getRemovedBytes());
+                getLog().info(sanitizedJar.getAbsolutePath() + " has been generated, " + result.getRemoved()
+                    + " excluded resource(s) removed (" + result.getRemovedBytes() + " bytes)");
+            } catch (IOException e) {
+                throw new MojoExecutionException("Unable to sanitize " + jar.getAbsolutePath(), e);
+            }
+        } finally {
+            writeReport(project, "sanitize-jar", metrics);
+        }
+    }
+
+    private ArchiveSanitizer createArchiveSanitizer(Configuration configuration) throws MojoExecutionException {
+        byte[] content;
+        Model model;
+        try {
+            content = Files.readAllBytes(pom.toPath());
+            model = new MavenXpp3Reader().read(new ByteArrayInputStream(content));
+        } catch (IOException | XmlPullParserException e) {
+            throw new MojoExecutionException("Unable to read the sanitized pom file: " + pom.getAbsolutePath(), e);
+        }
+        String groupId = model.getGroupId() != null ? model.getGroupId() : configuration.getGroupId();
+        String version = model.getVersion() != null ? model.getVersion() : configuration.getVersion();
+
+        return new ArchiveSanitizer()
+            .setMatcher(createResourceMatcher(configuration))
+            .setPom(content, groupId, model.getArtifactId(), version)
+            .setOriginal(project.getGroupId(), project.getArtifactId());
+    }
+}
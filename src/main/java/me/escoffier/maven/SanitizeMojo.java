@@ -1,35 +1,27 @@
 package me.escoffier.maven;
 
-import com.google.common.base.Strings;
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.IOUtils;
-import org.apache.commons.io.filefilter.TrueFileFilter;
-import org.apache.maven.model.*;
-import org.apache.maven.model.io.xpp3.MavenXpp3Writer;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.maven.model.Model;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
-import org.apache.maven.project.DefaultProjectBuildingRequest;
-import org.apache.maven.project.ProjectBuildingException;
-import org.apache.maven.project.ProjectBuildingResult;
-import org.yaml.snakeyaml.Yaml;
 
 import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
-import java.util.LinkedHashSet;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
+ * Generates the sanitized pom of the project. When the configuration declares variants, a sanitized pom is generated
+ * per variant ({@code pom-<variant>.xml.sanitized} with the default {@code sanitizer.pom}): the effective model is
+ * computed once, and the variants are applied concurrently to copies of it.
+ *
  * @author <a href="http://escoffier.me">Clement Escoffier</a>
  */
-@Mojo(name = "generate-sanitized-pom")
+@Mojo(name = "generate-sanitized-pom", threadSafe = true)
 public class SanitizeMojo extends AbstractSanitizerMojo {
 
     @Parameter(property = "sanitizer.module")
@@ -37,277 +29,121 @@ public class SanitizeMojo extends AbstractSanitizerMojo {
 
     @Parameter(property = "sanitizer.config")
     private File config;
-    
-    @Override
-    public void execute() throws MojoExecutionException, MojoFailureException {
-        Configuration configuration = createConfiguration();
-        File modifiedPomFile = phaseA(configuration);
-        Model model = loadPom(modifiedPomFile);
 
-        if (Strings.isNullOrEmpty(project.getOriginalModel().getName())) {
-            model.setName(null);
-        }
-        if (Strings.isNullOrEmpty(project.getOriginalModel().getDescription())) {
-           model.setDescription(null);
-        }
-        if (Strings.isNullOrEmpty(project.getOriginalModel().getUrl())) {
-           model.setUrl(null);
-        }
+    /**
+     * Whether the generation is skipped when none of the inputs have changed since the last execution.
+     */
+    @Parameter(property = "sanitizer.incremental", defaultValue = "true")
+    private boolean incremental;
 
-        File out = phaseB(model, configuration);
-        phaseC(out);
+    /**
+     * The number of variants sanitized concurrently, the number of available processors if not set. Only used when
+     * the configuration declares variants.
+     */
+    @Parameter(property = "sanitizer.threads", defaultValue = "0")
+    private int threads;
 
-        getLog().info(out.getAbsolutePath() + " has been generated");
-    }
+    @Parameter(defaultValue = "${plugin.version}", readonly = true)
+    private String pluginVersion;
 
-    private void phaseC(File out) throws MojoExecutionException {
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        Metrics metrics = createMetrics(project, "generate-sanitized-pom");
         try {
-            String content = FileUtils.readFileToString(out, StandardCharsets.UTF_8);
-            String path = project.getBasedir().getAbsolutePath();
-            content = content.replace(path, "${project.basedir}");
-            FileUtils.write(out, content, StandardCharsets.UTF_8);
-        } catch (IOException e) {
-            throw new MojoExecutionException("Unable to update path in pom file", e);
+            generate(metrics);
+        } finally {
+            writeReport(project, "generate-sanitized-pom", metrics);
         }
     }
 
-    private File phaseB(Model model, Configuration configuration) throws MojoExecutionException {
-        getLog().info("Starting transformation - Phase B");
-
-        // We are working on the effective pom, so we can delete the dependency management section and parent
-        getLog().info("Removing parent - working on effective pom");
-        model.setParent(null);
-        getLog().info("Removing dependency management - working on effective pom");
-        model.setDependencyManagement(null);
-
-        fixDependencies(configuration, model);
-
-        getLog().info("Excluding resources");
-        excludeResources(configuration.getModuleName(), model, configuration.getExcludedResources());
-
-        getLog().info("Removing excluded plugins");
-        removePlugins(model, configuration.getExcludedPlugins());
-
-        for (Profile profile : model.getProfiles()) {
-            if (configuration.getProfiles().contains(profile.getId())) {
-                getLog().info("Activating profile " + profile.getId());
-                Activation activation = profile.getActivation();
-                if (activation == null) {
-                    activation = new Activation();
-                    profile.setActivation(activation);
-                }
-                profile.getActivation().setActiveByDefault(true);
-            }
-        }
-
-        return write(pom, model);
-    }
-
-    private Model loadPom(File file) throws MojoExecutionException {
-        DefaultProjectBuildingRequest request = new DefaultProjectBuildingRequest();
-        request.setRepositorySession(repoSession);
-        request.setUserProperties(session.getUserProperties());
-        request.setSystemProperties(session.getSystemProperties());
-        request.setProfiles(session.getRequest().getProfiles());
-        request.setActiveProfileIds(session.getRequest().getActiveProfiles());
-        request.setRemoteRepositories(session.getRequest().getRemoteRepositories());
-        request.setBuildStartTime(session.getRequest().getStartTime());
-        request.setInactiveProfileIds(session.getRequest().getInactiveProfiles());
-        request.setPluginArtifactRepositories(session.getRequest().getPluginArtifactRepositories());
-        request.setLocalRepository(session.getRequest().getLocalRepository());
-
+    /**
+     * Generates the sanitized pom, or the sanitized pom of each variant declared by the configuration.
+     *
+     * @param metrics the metrics of the goal
+     * @return the sanitized poms, and their sanitized model ({@code null} if the sanitized pom was up to date),
+     * in the variant declaration order
+     * @throws MojoExecutionException if a sanitized pom cannot be generated
+     */
+    Map<File, Model> generate(Metrics metrics) throws MojoExecutionException {
+        ParsedConfiguration parsed;
+        try (Metrics.Phase ignored = metrics.start("configuration")) {
+            parsed = ConfigurationLoader.get(repoSession, ConfigurationLoader.locate(config, project), getLog());
+        }
+        Configuration configuration;
+        try (Metrics.Phase ignored = metrics.start("module-detection")) {
+            configuration = ConfigurationLoader.load(parsed, project, module, getLog());
+        }
+
+        Map<File, Model> models = new LinkedHashMap<>();
+        if (parsed.getVariants().isEmpty()) {
+            Sanitizer sanitizer = createSanitizer(configuration, parsed.getHash(), null,
+                createEffectiveModelBuilder(), metrics);
+            sanitizer.sanitize();
+            models.put(pom, sanitizer.getModel());
+            return models;
+        }
+
+        // The effective model is computed once, and each variant is applied to a copy
+        EffectiveModelBuilder builder = createEffectiveModelBuilder();
+        SharedEffectiveModel shared = new SharedEffectiveModel(
+            createSanitizer(configuration, parsed.getHash(), null, builder, metrics));
+        Map<String, Sanitizer> sanitizers = new LinkedHashMap<>();
+        for (Map.Entry<String, ParsedConfiguration> entry : parsed.getVariants().entrySet()) {
+            Configuration variant = entry.getValue().toConfiguration(project)
+                .setModuleName(configuration.getModuleName());
+            sanitizers.put(entry.getKey(), createSanitizer(variant, parsed.getHash(), entry.getKey(), builder, metrics)
+                .setSharedModel(shared));
+        }
+
+        int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(size, sanitizers.size()),
+            new ThreadFactoryBuilder().setNameFormat("sanitizer-variant-%d").setDaemon(true).build());
+        Map<String, Future<Boolean>> results = new LinkedHashMap<>();
         try {
-            ProjectBuildingResult result = projectBuilder.build(file, request);
-            return result.getProject().getModel();
-        } catch (ProjectBuildingException e) {
-            throw new MojoExecutionException("Unable to read the modified pom file", e);
-        }
-    }
-
-    private File phaseA(Configuration configuration) throws MojoExecutionException {
-        getLog().info("Starting transformation - Phase A");
-        Model model = project.getOriginalModel();
-
-        getLog().info("Setting coordinates");
-        model.setGroupId(configuration.getGroupId());
-        model.setArtifactId(configuration.getArtifactId());
-        model.setVersion(configuration.getVersion());
-
-        if (model.getParent() != null && configuration.getParentVersion() != null) {
-            model.getParent().setVersion(configuration.getParentVersion());
-        }
-
-        fixDependencies(configuration, model);
-
-        File out = new File(project.getBasedir(), "pom.xml.modified");
-        return write(out, model);
-    }
-
-    private void fixDependencies(Configuration configuration, Model model) throws MojoExecutionException {
-        getLog().info("Removing excluded dependencies");
-        List<Exclusion> excludedDependencies = configuration.getExcludedDependencies().stream().map(s -> {
-            String[] seg = s.split(":");
-            Exclusion dependency = new Exclusion();
-            dependency.setGroupId(seg[0]);
-            dependency.setArtifactId(seg[1]);
-            return dependency;
-        }).collect(Collectors.toList());
-        cleanupDependencies(model, excludedDependencies);
-        excludeDependencies(model, excludedDependencies);
-    }
-
-    private Configuration createConfiguration() throws MojoExecutionException {
-        Configuration configuration = loadConfiguration();
-        if (module != null) {
-            configuration.setModuleName(module);
-        } else if (configuration.getModuleName() == null) {
-            configuration.setModuleName(ModuleUtils.findModuleName(getLog(), project));
-        }
-        getLog().info("Set module name to " + configuration.getModuleName());
-        return configuration;
-    }
-
-    private Configuration loadConfiguration() throws MojoExecutionException {
-        Yaml yaml = new Yaml();
-        String content;
-
-        if (config == null) {
-            config = new File(project.getBasedir(), "sanitizer-config.yml");
-        }
-
-        if (config.isFile()) {
-            try {
-                content = FileUtils.readFileToString(config, StandardCharsets.UTF_8);
-            } catch (IOException e) {
-                throw new MojoExecutionException("Unable to read the configuration file", e);
+            for (Map.Entry<String, Sanitizer> entry : sanitizers.entrySet()) {
+                results.put(entry.getKey(), pool.submit(entry.getValue()::sanitize));
             }
-        } else {
-            getLog().info("Using default configuration...");
-            URL url = this.getClass().getClassLoader().getResource("default-configuration.yml");
-            if (url == null) {
-                throw new MojoExecutionException("Unable to find the default configuration file");
-            }
-
-            try {
-                content = IOUtils.toString(url, StandardCharsets.UTF_8);
-            } catch (IOException e) {
-                throw new MojoExecutionException("Unable to read the configuration file", e);
-            }
-        }
-
-        Map data = (Map) yaml.load(content);
-
-        List<String> deps = (List<String>) data.get("excluded-dependencies");
-        List<String> res = (List<String>) data.get("excluded-resources");
-        List<String> plugins = (List<String>) data.get("excluded-plugins");
-        List<String> profiles = (List<String>) data.get("profiles");
-        String module = (String) data.get("module");
-        String groupId = (String) data.get("groupId");
-        String artifactId = (String) data.get("artifactId");
-        String version = (String) data.get("version");
-        String parentVersion = (String) data.get("parent-version");
-
-        if (groupId == null) {
-            groupId = project.getGroupId();
-        }
-
-        if (artifactId == null) {
-            artifactId = project.getArtifactId();
-        }
-
-        if (version == null) {
-            version = project.getVersion();
-        } else {
-            version = version.replace("${version}", project.getVersion());
-        }
-
-        return new Configuration().setModuleName(module)
-            .setExcludedDependencies(new LinkedHashSet<>(deps))
-            .setExcludedPlugins(new LinkedHashSet<>(plugins))
-            .setExcludedResources(new LinkedHashSet<>(res))
-            .setProfiles(new LinkedHashSet<>(profiles))
-            .setGroupId(groupId)
-            .setArtifactId(artifactId)
-            .setVersion(version)
-            .setParentVersion(parentVersion);
-    }
-
-    private void removePlugins(Model model, Set<String> pluginsToRemove) {
-        Build build = model.getBuild();
-        if (build != null) {
-            for (String artifactId : pluginsToRemove) {
-                Plugin plugin = getPlugin(artifactId, build.getPlugins());
-                if (plugin != null) {
-                    build.removePlugin(plugin);
-                }
-            }
-        }
-    }
-
-    private Plugin getPlugin(String artifact, List<Plugin> plugins) {
-        if (plugins == null) {
-            return null;
-        }
-
-        for (Plugin plugin : plugins) {
-            if (plugin.getArtifactId().equals(artifact)) {
-                return plugin;
-            }
-        }
-        return null;
-    }
-
-    private void excludeResources(String module, Model model, Set<String> resourcesToExclude) {
-        List<String> exclusions = resourcesToExclude.stream()
-            .map(s -> s.replace("${module}", module))
-            .collect(Collectors.toList());
-        Build build = model.getBuild();
-        if (build != null) {
-            List<Resource> resources = build.getResources();
-            if (resources != null) {
-                for (Resource resource : resources) {
-                    resource.setExcludes(exclusions);
+            List<String> failures = new ArrayList<>();
+            for (Map.Entry<String, Future<Boolean>> entry : results.entrySet()) {
+                try {
+                    entry.getValue().get();
+                    models.put(getVariantPom(entry.getKey()), sanitizers.get(entry.getKey()).getModel());
+                } catch (ExecutionException e) {
+                    getLog().error("Unable to sanitize the variant " + entry.getKey(), e.getCause());
+                    failures.add(entry.getKey());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new MojoExecutionException("Interrupted while sanitizing the variants", e);
                 }
             }
-        }
-    }
-
-    private void excludeDependencies(Model model, List<Exclusion> depsToExclude) throws MojoExecutionException {
-        for (Dependency dependency : model.getDependencies()) {
-            if (dependency.getScope() == null || dependency.getScope().equalsIgnoreCase("compile")) {
-                for (Exclusion ex : depsToExclude) {
-                    dependency.addExclusion(ex);
-                }
+            if (!failures.isEmpty()) {
+                throw new MojoExecutionException("Unable to sanitize the variants " + failures);
             }
+        } finally {
+            pool.shutdownNow();
         }
+        return models;
     }
 
-    private void cleanupDependencies(Model model, List<Exclusion> excluded) {
-        List<String> names = excluded.stream().map(Exclusion::getArtifactId).collect(Collectors.toList());
-        getLog().info("Old set of dependency: " + model.getDependencies().size());
-        List<Dependency> dependencies = model.getDependencies().stream()
-            .filter(dependency -> !names.contains(dependency.getArtifactId()))
-            .collect(Collectors.toList());
-
-        model.setDependencies(dependencies);
-        getLog().info("New set of dependency: " + model.getDependencies().size());
-    }
-
-    private File write(File pomFile, Model model) throws MojoExecutionException {
-        try {
-            MavenXpp3Writer xpp3Writer = new MavenXpp3Writer();
-            final FileWriter pomFileWriter = new FileWriter(pomFile);
-            xpp3Writer.write(pomFileWriter, model);
-
-            pomFileWriter.flush();
-            pomFileWriter.close();
-            return pomFile;
-        } catch (IOException e) {
-            throw new MojoExecutionException("Cannot write the new pom.xml file", e);
-        }
-    }
-
-    private boolean isDirEmpty(File dir) {
-        return FileUtils.listFiles(dir, TrueFileFilter.INSTANCE, TrueFileFilter.INSTANCE).isEmpty();
+    private Sanitizer createSanitizer(Configuration configuration, String hash, String variant,
+                                      EffectiveModelBuilder builder, Metrics metrics) throws MojoExecutionException {
+        File output = variant == null ? pom : getVariantPom(variant);
+        return new Sanitizer()
+            .setProject(project)
+            .setSession(session)
+            .setConfiguration(configuration, hash)
+            .setEffectiveModelBuilder(builder)
+            .setDependencyGraphAnalyzer(graphExclusions ? createDependencyGraphAnalyzer() : null)
+            .setOutput(output)
+            .setVariant(variant)
+            .setIncremental(incremental)
+            .setPatch(isPatchWriter())
+            .setParameters("module=" + module + ",config=" + config + ",pom=" + output
+                + ",graphExclusions=" + graphExclusions + ",lightweight=" + lightweight
+                + ",writer=" + writer + ",variant=" + variant)
+            .setPluginVersion(pluginVersion)
+            .setLogPrefix(variant == null ? "" : "[" + variant + "] ")
+            .setMetrics(metrics)
+            .setLog(getLog());
     }
 }
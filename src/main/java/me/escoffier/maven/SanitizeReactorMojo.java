@@ -0,0 +1,156 @@
+package me.escoffier.maven;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Generates the sanitized pom of every project of the reactor from a single invocation. The projects are sanitized
+ * concurrently, and share the configuration, the model building settings and the cache of parent models. When the
+ * configuration of a project declares variants, a sanitized pom is generated per variant, as done by
+ * {@code generate-sanitized-pom}.
+ *
+ * @author <a href="http://escoffier.me">Clement Escoffier</a>
+ */
+@Mojo(name = "generate-sanitized-poms", aggregator = true, threadSafe = true)
+public class SanitizeReactorMojo extends AbstractSanitizerMojo {
+
+    @Parameter(property = "sanitizer.config")
+    private File config;
+
+    /**
+     * Whether the generation is skipped when none of the inputs have changed since the last execution.
+     */
+    @Parameter(property = "sanitizer.incremental", defaultValue = "true")
+    private boolean incremental;
+
+    /**
+     * The number of projects sanitized concurrently, the number of available processors if not set.
+     */
+    @Parameter(property = "sanitizer.threads", defaultValue = "0")
+    private int threads;
+
+    @Parameter(defaultValue = "${plugin.version}", readonly = true)
+    private String pluginVersion;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        List<MavenProject> projects = session.getProjects();
+
+        // Each distinct configuration file is only parsed once
+        Map<MavenProject, ParsedConfiguration> configurations = new HashMap<>();
+        for (MavenProject module : projects) {
+            configurations.put(module,
+                ConfigurationLoader.get(repoSession, ConfigurationLoader.locate(config, module), getLog()));
+        }
+
+        EffectiveModelBuilder builder = createEffectiveModelBuilder();
+        int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(size, Math.max(1, projects.size())),
+            new ThreadFactoryBuilder().setNameFormat("sanitizer-%d").setDaemon(true).build());
+
+        Map<MavenProject, Future<List<Boolean>>> results = new LinkedHashMap<>();
+        try {
+            for (MavenProject module : projects) {
+                ParsedConfiguration parsed = configurations.get(module);
+                results.put(module, pool.submit(() -> sanitize(module, parsed, builder)));
+            }
+
+            List<String> failures = new ArrayList<>();
+            int generated = 0;
+            int unchanged = 0;
+            for (Map.Entry<MavenProject, Future<List<Boolean>>> entry : results.entrySet()) {
+                try {
+                    for (boolean written : entry.getValue().get()) {
+                        if (written) {
+                            generated++;
+                        } else {
+                            unchanged++;
+                        }
+                    }
+                } catch (ExecutionException e) {
+                    getLog().error("Unable to sanitize " + entry.getKey().getId(), e.getCause());
+                    failures.add(entry.getKey().getId());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new MojoExecutionException("Interrupted while sanitizing the reactor", e);
+                }
+            }
+            getLog().info(generated + " sanitized pom(s) written, " + unchanged + " up to date or unchanged");
+            if (!failures.isEmpty()) {
+                throw new MojoExecutionException("Unable to sanitize " + failures);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * @return whether each sanitized pom of the project has been written, one per variant
+     */
+    private List<Boolean> sanitize(MavenProject module, ParsedConfiguration parsed, EffectiveModelBuilder builder)
+        throws MojoExecutionException {
+        Metrics metrics = createMetrics(module, "generate-sanitized-poms");
+        try {
+            Configuration configuration;
+            try (Metrics.Phase ignored = metrics.start("module-detection")) {
+                configuration = ConfigurationLoader.load(parsed, module, null, getLog());
+            }
+            return sanitize(module, parsed, configuration, builder, metrics);
+        } finally {
+            writeReport(module, "generate-sanitized-poms", metrics);
+        }
+    }
+
+    private List<Boolean> sanitize(MavenProject module, ParsedConfiguration parsed, Configuration configuration,
+                                   EffectiveModelBuilder builder, Metrics metrics) throws MojoExecutionException {
+        File output = new File(module.getBasedir(), pom.getName());
+        Sanitizer sanitizer = createSanitizer(module, configuration, parsed.getHash(), null, output, builder, metrics);
+        if (parsed.getVariants().isEmpty()) {
+            return Collections.singletonList(sanitizer.sanitize());
+        }
+
+        // The variants of a project are sanitized sequentially, the projects are sanitized concurrently
+        SharedEffectiveModel shared = new SharedEffectiveModel(sanitizer);
+        List<Boolean> written = new ArrayList<>();
+        for (Map.Entry<String, ParsedConfiguration> entry : parsed.getVariants().entrySet()) {
+            Configuration variant = entry.getValue().toConfiguration(module)
+                .setModuleName(configuration.getModuleName());
+            written.add(createSanitizer(module, variant, parsed.getHash(), entry.getKey(),
+                getVariantPom(output, entry.getKey()), builder, metrics).setSharedModel(shared).sanitize());
+        }
+        return written;
+    }
+
+    private Sanitizer createSanitizer(MavenProject module, Configuration configuration, String hash, String variant,
+                                      File output, EffectiveModelBuilder builder, Metrics metrics)
+        throws MojoExecutionException {
+        return new Sanitizer()
+            .setProject(module)
+            .setSession(session)
+            .setConfiguration(configuration, hash)
+            .setEffectiveModelBuilder(builder)
+            .setDependencyGraphAnalyzer(graphExclusions ? createDependencyGraphAnalyzer() : null)
+            .setOutput(output)
+            .setVariant(variant)
+            .setIncremental(incremental)
+            .setPatch(isPatchWriter())
+            .setParameters("module=null,config=" + config + ",pom=" + output
+                + ",graphExclusions=" + graphExclusions + ",lightweight=" + lightweight
+                + ",writer=" + writer + ",variant=" + variant)
+            .setPluginVersion(pluginVersion)
+            .setLogPrefix("[" + module.getArtifactId() + (variant == null ? "" : "/" + variant) + "] ")
+            .setMetrics(metrics)
+            .setLog(getLog());
+    }
+}
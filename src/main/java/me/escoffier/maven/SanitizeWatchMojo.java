@@ -0,0 +1,198 @@
+package me.escoffier.maven;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generates the sanitized pom, and then watches the pom, its parents and the configuration to generate it again on
+ * each change, until the build is interrupted (or until {@code sanitizer.watchTimeout} elapses without change).
+ * <p>
+ * The container, the model cache and the effective model stay warm between the generations. The project is only
+ * loaded again when the pom or a parent changes, and the effective model is only computed again when its inputs
+ * changed: when only the excluded plugins, resources or profiles of the configuration changed, only the phase B
+ * runs.
+ *
+ * @author <a href="http://escoffier.me">Clement Escoffier</a>
+ */
+@Mojo(name = "sanitize-watch", threadSafe = true)
+public class SanitizeWatchMojo extends AbstractSanitizerMojo {
+
+    private static final String GOAL = "sanitize-watch";
+
+    @Parameter(property = "sanitizer.module")
+    private String module;
+
+    @Parameter(property = "sanitizer.config")
+    private File config;
+
+    /**
+     * The number of seconds without change after which the goal stops, 0 to watch until the build is interrupted.
+     */
+    @Parameter(property = "sanitizer.watchTimeout", defaultValue = "0")
+    private int watchTimeout;
+
+    /**
+     * The delay, in milliseconds, waited after a change to collect the other changes of the same edit.
+     */
+    @Parameter(property = "sanitizer.watchDelay", defaultValue = "100")
+    private int watchDelay;
+
+    @Parameter(defaultValue = "${plugin.version}", readonly = true)
+    private String pluginVersion;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        EffectiveModelBuilder builder = createEffectiveModelBuilder();
+        EffectiveModelMemo memo = new EffectiveModelMemo();
+        MavenProject current = project;
+        generate(current, builder, memo);
+
+        try (WatchService watcher = FileSystems.getDefault().newWatchService()) {
+            Map<WatchKey, Path> directories = new HashMap<>();
+            Set<Path> files = getWatchedFiles(current);
+            register(watcher, files, directories);
+            getLog().info("Watching " + files.size() + " file(s) for changes");
+
+            while (true) {
+                Set<Path> changes = poll(watcher, directories, files);
+                if (changes == null) {
+                    getLog().info("No change for " + watchTimeout + " second(s), stopping");
+                    return;
+                }
+                if (changes.isEmpty()) {
+                    continue;
+                }
+                getLog().info("Changed: " + changes);
+
+                long begin = System.nanoTime();
+                try {
+                    if (!changes.equals(Collections.singleton(getConfigFile(current)))) {
+                        // The pom or a parent changed, the cached parent models may be stale
+                        current = loadProject(current.getFile());
+                        builder = createEffectiveModelBuilder();
+                    }
+                    generate(current, builder, memo);
+                    getLog().info("Sanitized pom regenerated in "
+                        + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin) + " ms");
+                } catch (MojoExecutionException e) {
+                    // Keep watching, the next change may fix the issue
+                    getLog().error(e.getMessage(), e.getCause());
+                }
+
+                // The parents or the configuration location may have changed
+                files = getWatchedFiles(current);
+                register(watcher, files, directories);
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to watch the project files", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            getLog().info("Interrupted, stopping");
+        }
+    }
+
+    private void generate(MavenProject current, EffectiveModelBuilder builder, EffectiveModelMemo memo)
+        throws MojoExecutionException {
+        Metrics metrics = createMetrics(current, GOAL);
+        try {
+            ParsedConfiguration parsed;
+            try (Metrics.Phase ignored = metrics.start("configuration")) {
+                parsed = ConfigurationLoader.get(repoSession, getConfigFile(current).toFile(), getLog());
+            }
+            Configuration configuration;
+            try (Metrics.Phase ignored = metrics.start("module-detection")) {
+                configuration = ConfigurationLoader.load(parsed, current, module, getLog());
+            }
+            new Sanitizer()
+                .setProject(current)
+                .setSession(session)
+                .setConfiguration(configuration, parsed.getHash())
+                .setEffectiveModelBuilder(builder)
+                .setEffectiveModelMemo(memo)
+                .setDependencyGraphAnalyzer(graphExclusions ? createDependencyGraphAnalyzer() : null)
+                .setOutput(pom)
+                .setIncremental(true)
+                .setPatch(isPatchWriter())
+                .setParameters("module=" + module + ",config=" + config + ",pom=" + pom
+                    + ",graphExclusions=" + graphExclusions + ",lightweight=" + lightweight
+                    + ",writer=" + writer)
+                .setPluginVersion(pluginVersion)
+                .setMetrics(metrics)
+                .setLog(getLog())
+                .sanitize();
+        } finally {
+            writeReport(current, GOAL, metrics);
+        }
+    }
+
+    private Path getConfigFile(MavenProject current) {
+        return ConfigurationLoader.locate(config, current).toPath().toAbsolutePath();
+    }
+
+    /**
+     * @return the pom, the parent poms found on the file system and the configuration file
+     */
+    private Set<Path> getWatchedFiles(MavenProject current) {
+        Set<Path> files = new LinkedHashSet<>();
+        files.add(current.getFile().toPath().toAbsolutePath());
+        MavenProject parent = current.getParent();
+        while (parent != null) {
+            if (parent.getFile() != null) {
+                files.add(parent.getFile().toPath().toAbsolutePath());
+            }
+            parent = parent.getParent();
+        }
+        files.add(getConfigFile(current));
+        return files;
+    }
+
+    private static void register(WatchService watcher, Set<Path> files, Map<WatchKey, Path> directories)
+        throws IOException {
+        for (Path file : files) {
+            Path directory = file.getParent();
+            if (Files.isDirectory(directory) && !directories.containsValue(directory)) {
+                WatchKey key = directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                directories.put(key, directory);
+            }
+        }
+    }
+
+    /**
+     * Waits for the changes of the watched files. Once a change is detected, waits for {@code watchDelay} to
+     * collect the other events of the same edit.
+     *
+     * @return the changed files, empty if only other files changed, {@code null} if the timeout elapsed
+     */
+    private Set<Path> poll(WatchService watcher, Map<WatchKey, Path> directories, Set<Path> files)
+        throws InterruptedException {
+        WatchKey key = watchTimeout > 0 ? watcher.poll(watchTimeout, TimeUnit.SECONDS) : watcher.take();
+        if (key == null) {
+            return null;
+        }
+        Set<Path> changes = new TreeSet<>();
+        while (key != null) {
+            Path directory = directories.get(key);
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (directory != null && event.context() instanceof Path) {
+                    Path file = directory.resolve((Path) event.context());
+                    if (files.contains(file)) {
+                        changes.add(file);
+                    }
+                }
+            }
+            key.reset();
+            key = watcher.poll(watchDelay, TimeUnit.MILLISECONDS);
+        }
+        return changes;
+    }
+}
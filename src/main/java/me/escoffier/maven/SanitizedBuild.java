@@ -0,0 +1,64 @@
+package me.escoffier.maven;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A nested build of a sanitized pom executed by {@code build-with-sanitized-pom}, configured in the {@code builds}
+ * parameter:
+ * <pre>
+ * &lt;builds&gt;
+ *   &lt;build&gt;
+ *     &lt;id&gt;vendor&lt;/id&gt;
+ *     &lt;pom&gt;pom-vendor.xml.sanitized&lt;/pom&gt;
+ *     &lt;properties&gt;
+ *       &lt;skipTests&gt;false&lt;/skipTests&gt;
+ *     &lt;/properties&gt;
+ *   &lt;/build&gt;
+ * &lt;/builds&gt;
+ * </pre>
+ *
+ * @author <a href="http://escoffier.me">Clement Escoffier</a>
+ */
+public class SanitizedBuild {
+
+    private String id;
+
+    private File pom;
+
+    private Map<String, String> properties = new HashMap<>();
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @param id the build identifier, naming the build directory, the name of the pom if not set
+     */
+    public SanitizedBuild setId(String id) {
+        this.id = id;
+        return this;
+    }
+
+    public File getPom() {
+        return pom;
+    }
+
+    public SanitizedBuild setPom(File pom) {
+        this.pom = pom;
+        return this;
+    }
+
+    public Map<String, String> getProperties() {
+        return properties;
+    }
+
+    /**
+     * @param properties the user properties of this build, added to the properties of all the builds
+     */
+    public SanitizedBuild setProperties(Map<String, String> properties) {
+        this.properties = properties;
+        return this;
+    }
+}
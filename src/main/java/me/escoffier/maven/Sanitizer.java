@@ -0,0 +1,821 @@
+package me.escoffier.maven;
+
+import com.google.common.base.Strings;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.*;
+import org.apache.maven.model.io.xpp3.MavenXpp3Writer;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Generates the sanitized pom of a single project. The sanitization is done in two phases:
+ * <ol>
+ * <li>Phase A: the coordinates and dependencies of the original model are patched</li>
+ * <li>Phase B: the effective model of the patched model is computed and cleaned up, and then written</li>
+ * </ol>
+ *
+ * @author <a href="http://escoffier.me">Clement Escoffier</a>
+ */
+public class Sanitizer {
+
+    private MavenProject project;
+    private MavenSession session;
+    private Configuration configuration;
+    private RuleSet rules;
+    private ResourceMatcher resourceMatcher;
+    private ResourceIndex resourceIndex;
+    private Model sanitizedModel;
+    private String configurationHash;
+    private EffectiveModelBuilder effectiveModelBuilder;
+    private DependencyGraphAnalyzer dependencyGraphAnalyzer;
+    private EffectiveModelMemo memo;
+    private SharedEffectiveModel sharedModel;
+    private String variant;
+    private File output;
+    private boolean incremental;
+    private boolean patch;
+    private String parameters;
+    private String pluginVersion;
+    private String logPrefix = "";
+    private Metrics metrics = new Metrics(null, null, false);
+    private Log log;
+
+    public Sanitizer setProject(MavenProject project) {
+        this.project = project;
+        return this;
+    }
+
+    public Sanitizer setSession(MavenSession session) {
+        this.session = session;
+        return this;
+    }
+
+    /**
+     * @param configuration the configuration of the project
+     * @param hash          the hash of the configuration content, used to detect changes
+     */
+    public Sanitizer setConfiguration(Configuration configuration, String hash) {
+        this.configuration = configuration;
+        this.configurationHash = hash;
+        return this;
+    }
+
+    public Sanitizer setEffectiveModelBuilder(EffectiveModelBuilder effectiveModelBuilder) {
+        this.effectiveModelBuilder = effectiveModelBuilder;
+        return this;
+    }
+
+    /**
+     * @param dependencyGraphAnalyzer the analyzer used to only add the exclusions to the dependencies reaching the
+     *                                excluded artifacts, {@code null} to add them to every compile dependency
+     */
+    public Sanitizer setDependencyGraphAnalyzer(DependencyGraphAnalyzer dependencyGraphAnalyzer) {
+        this.dependencyGraphAnalyzer = dependencyGraphAnalyzer;
+        return this;
+    }
+
+    /**
+     * @param memo the effective model of the previous sanitization of the project, reused if its inputs did not
+     *             change, {@code null} to always compute it
+     */
+    public Sanitizer setEffectiveModelMemo(EffectiveModelMemo memo) {
+        this.memo = memo;
+        return this;
+    }
+
+    /**
+     * @param sharedModel the effective model shared by the variants of the project, {@code null} to compute the
+     *                    effective model of the patched model. Only used when the configuration keeps the original
+     *                    coordinates, see {@link #hasSharedModel(Configuration)}.
+     */
+    public Sanitizer setSharedModel(SharedEffectiveModel sharedModel) {
+        this.sharedModel = sharedModel;
+        return this;
+    }
+
+    /**
+     * @param variant the name of the sanitized variant, used to name its manifests, {@code null} if the
+     *                configuration does not declare variants
+     */
+    public Sanitizer setVariant(String variant) {
+        this.variant = variant;
+        return this;
+    }
+
+    public Sanitizer setOutput(File output) {
+        this.output = output;
+        return this;
+    }
+
+    public Sanitizer setIncremental(boolean incremental) {
+        this.incremental = incremental;
+        return this;
+    }
+
+    /**
+     * @param patch whether the original pom is patched by {@link PomPatcher}, instead of writing its sanitized
+     *              effective model
+     */
+    public Sanitizer setPatch(boolean patch) {
+        this.patch = patch;
+        return this;
+    }
+
+    /**
+     * @param parameters a description of the user parameters, used to detect changes
+     */
+    public Sanitizer setParameters(String parameters) {
+        this.parameters = parameters;
+        return this;
+    }
+
+    public Sanitizer setPluginVersion(String pluginVersion) {
+        this.pluginVersion = pluginVersion;
+        return this;
+    }
+
+    /**
+     * @param logPrefix a prefix added to all log messages, useful when several projects are sanitized concurrently
+     */
+    public Sanitizer setLogPrefix(String logPrefix) {
+        this.logPrefix = logPrefix;
+        return this;
+    }
+
+    public Sanitizer setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    public Sanitizer setLog(Log log) {
+        this.log = log;
+        return this;
+    }
+
+    /**
+     * @return the sanitized model, with the absolute project paths, {@code null} if the sanitized pom has not been
+     * generated (not run yet, up to date or patched)
+     */
+    public Model getModel() {
+        return sanitizedModel;
+    }
+
+    /**
+     * Generates the sanitized pom.
+     *
+     * @return {@code true} if the output has been written, {@code false} if it was already up to date
+     * @throws MojoExecutionException if the sanitized pom cannot be generated
+     */
+    public boolean sanitize() throws MojoExecutionException {
+        compileRules();
+
+        try (Metrics.Phase phase = metrics.start("resource-index")) {
+            indexResources();
+            phase.count("files", resourceIndex.getFileCount()).count("bytes", resourceIndex.getByteCount());
+        }
+
+        File manifest = getManifest(project, "fingerprint", variant);
+        Fingerprint fingerprint;
+        try (Metrics.Phase ignored = metrics.start("fingerprint")) {
+            fingerprint = computeFingerprint();
+            if (incremental) {
+                try {
+                    String change = fingerprint.findChange(manifest, output);
+                    if (change == null) {
+                        info(output.getAbsolutePath() + " is up to date");
+                        return false;
+                    }
+                    log.debug(logPrefix + "Sanitized pom out of date, changed entry: " + change);
+                } catch (IOException e) {
+                    log.debug(logPrefix + "Unable to check the fingerprint, regenerating", e);
+                }
+            }
+        }
+
+        Model model = null;
+        byte[] content = null;
+        if (patch) {
+            try (Metrics.Phase phase = metrics.start("patch")) {
+                content = patch(phase);
+            }
+        } else {
+            model = sanitizeModel();
+        }
+
+        // Formerly phase C, the project directory is replaced while writing
+        boolean written;
+        try (Metrics.Phase phase = metrics.start("write")) {
+            if (content == null) {
+                content = write(model);
+            }
+            written = writeIfChanged(output, content);
+            phase.count("bytes", content.length).count("written", written ? 1 : 0);
+            if (written) {
+                info(output.getAbsolutePath() + " has been generated");
+            } else {
+                info(output.getAbsolutePath() + " is unchanged");
+            }
+
+            resourceIndex.write(getManifest(project, "excluded-resources", variant));
+            fingerprint.write(manifest, content);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to write the sanitizer manifests", e);
+        }
+        this.sanitizedModel = model;
+        return written;
+    }
+
+    /**
+     * Gets a manifest written by the sanitizer in the build directory of a project.
+     *
+     * @param project the project
+     * @param name    the manifest name
+     * @param variant the variant, {@code null} if the configuration does not declare variants
+     * @return the manifest file
+     */
+    static File getManifest(MavenProject project, String name, String variant) {
+        return new File(project.getBuild().getDirectory(),
+            "sanitizer/" + name + (variant == null ? "" : "-" + variant) + ".properties");
+    }
+
+    /**
+     * Runs the phases A and B, computing the sanitized effective model.
+     */
+    private Model sanitizeModel() throws MojoExecutionException {
+        Model model;
+        if (sharedModel != null && sharedModel.appliesTo(configuration)) {
+            try (Metrics.Phase ignored = metrics.start("copy")) {
+                model = sharedModel.get();
+            }
+        } else {
+            model = buildEffectiveModel();
+        }
+
+        try (Metrics.Phase phase = metrics.start("phaseB")) {
+            phaseB(model, phase);
+        }
+        return model;
+    }
+
+    /**
+     * Computes the effective model shared by the variants: the effective model of the original model, with its
+     * original coordinates and dependencies, and the parent version of the configuration. Each variant keeping these
+     * coordinates and parent version then applies its rules to a copy, see {@link #hasSharedModel(Configuration)}.
+     *
+     * @return the shared effective model
+     * @throws MojoExecutionException if the effective model cannot be computed
+     */
+    Model buildSharedModel() throws MojoExecutionException {
+        try (Metrics.Phase ignored = metrics.start("loadPom")) {
+            // Work on a copy, the original model of the project must not be altered
+            Model modified = project.getOriginalModel().clone();
+            if (modified.getParent() != null && configuration.getParentVersion() != null) {
+                modified.getParent().setVersion(configuration.getParentVersion());
+            }
+            Model model = effectiveModelBuilder.build(project.getFile(), modified);
+            clearInheritedDescription(model);
+            return model;
+        }
+    }
+
+    /**
+     * Checks whether the model computed by {@link #buildSharedModel()} is the effective model of a variant. The
+     * coordinates are set on the raw model, before the interpolation of {@code ${project.version}} and the other
+     * coordinate expressions, so a variant changing the coordinates or the parent version needs its own effective
+     * model. Its parents and imported poms are still shared through the model cache.
+     *
+     * @param variant the configuration of the variant
+     * @return whether the variant can use a copy of the shared model
+     */
+    boolean hasSharedModel(Configuration variant) {
+        return Objects.equals(variant.getGroupId(), project.getGroupId())
+            && Objects.equals(variant.getArtifactId(), project.getArtifactId())
+            && Objects.equals(variant.getVersion(), project.getVersion())
+            && Objects.equals(variant.getParentVersion(), configuration.getParentVersion());
+    }
+
+    private Model buildEffectiveModel() throws MojoExecutionException {
+        Model modified;
+        try (Metrics.Phase phase = metrics.start("phaseA")) {
+            modified = phaseA(phase);
+        }
+
+        Model model;
+        try (Metrics.Phase phase = metrics.start("loadPom")) {
+            String key = memo == null ? null : getMemoKey(modified);
+            model = key == null ? null : memo.get(key);
+            if (model != null) {
+                log.debug(logPrefix + "Reusing the previous effective model");
+                phase.count("reused", 1);
+            } else {
+                model = effectiveModelBuilder.build(project.getFile(), modified);
+                if (key != null) {
+                    memo.put(key, model);
+                }
+            }
+        }
+        clearInheritedDescription(model);
+        return model;
+    }
+
+    private void clearInheritedDescription(Model model) {
+        if (Strings.isNullOrEmpty(project.getOriginalModel().getName())) {
+            model.setName(null);
+        }
+        if (Strings.isNullOrEmpty(project.getOriginalModel().getDescription())) {
+            model.setDescription(null);
+        }
+        if (Strings.isNullOrEmpty(project.getOriginalModel().getUrl())) {
+            model.setUrl(null);
+        }
+    }
+
+    /**
+     * Computes the key of the inputs of the effective model: the patched model and the parent poms.
+     */
+    private String getMemoKey(Model modified) throws MojoExecutionException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8)) {
+            new MavenXpp3Writer().write(writer, modified);
+            MavenProject parent = project.getParent();
+            while (parent != null) {
+                File file = parent.getFile();
+                writer.write(parent.getId() + "=" + (file == null || !file.isFile() ? "missing"
+                    : Fingerprint.hash(Files.readAllBytes(file.toPath()))) + "\n");
+                parent = parent.getParent();
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to compute the key of the effective model", e);
+        }
+        return project.getFile().getAbsolutePath() + ":" + Fingerprint.hash(out.toByteArray());
+    }
+
+    /**
+     * Patches the original pom, keeping its formatting.
+     *
+     * @return the patched pom
+     */
+    private byte[] patch(Metrics.Phase phase) throws MojoExecutionException {
+        info("Patching " + project.getFile().getAbsolutePath());
+        warnUnpatched();
+        PomPatcher patcher = new PomPatcher()
+            .setCoordinates(configuration.getGroupId(), project.getGroupId(), configuration.getArtifactId(),
+                configuration.getVersion(), project.getVersion())
+            .setParentVersion(configuration.getParentVersion())
+            .setRules(rules)
+            .setResources(resourceIndex, project.getBasedir(), new File(project.getBuild().getDirectory()),
+                project.getBuild().getResources());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            patcher.patch(project.getFile(), out, phase);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Cannot patch the pom.xml file", e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * The patch writer only edits the elements declared in the pom. Warns about the elements of the effective model
+     * it cannot sanitize: the excluded dependencies and plugins inherited from the parent, the excluded dependencies
+     * still managed by the parent or an imported BOM, and the inherited dependencies not receiving the exclusions.
+     */
+    private void warnUnpatched() {
+        if (dependencyGraphAnalyzer != null) {
+            log.warn(logPrefix + "The dependency graph exclusions are not supported by the patch writer, the "
+                + "exclusions are added to all the declared compile dependencies");
+        }
+        Model original = project.getOriginalModel();
+        Set<String> declared = new HashSet<>();
+        Set<String> managed = new HashSet<>();
+        Set<String> plugins = new HashSet<>();
+        List<ModelBase> bases = new ArrayList<>();
+        bases.add(original);
+        bases.addAll(original.getProfiles());
+        for (ModelBase base : bases) {
+            base.getDependencies().forEach(dependency -> declared.add(dependency.getManagementKey()));
+            if (base.getDependencyManagement() != null) {
+                base.getDependencyManagement().getDependencies()
+                    .forEach(dependency -> managed.add(dependency.getManagementKey()));
+            }
+            BuildBase build = base instanceof Model ? ((Model) base).getBuild() : ((Profile) base).getBuild();
+            if (build != null) {
+                build.getPlugins().forEach(plugin -> plugins.add(plugin.getKey()));
+            }
+        }
+
+        Model effective = project.getModel();
+        List<String> unpatched = new ArrayList<>();
+        List<String> unexcluded = new ArrayList<>();
+        for (Dependency dependency : effective.getDependencies()) {
+            if (declared.contains(dependency.getManagementKey())) {
+                continue;
+            }
+            if (rules.isExcludedDependency(dependency.getGroupId(), dependency.getArtifactId())) {
+                unpatched.add("dependency " + dependency.getManagementKey());
+            } else if (!rules.getExclusions().isEmpty()
+                && (dependency.getScope() == null || dependency.getScope().equalsIgnoreCase("compile"))) {
+                unexcluded.add(dependency.getManagementKey());
+            }
+        }
+        if (effective.getDependencyManagement() != null) {
+            for (Dependency dependency : effective.getDependencyManagement().getDependencies()) {
+                if (!managed.contains(dependency.getManagementKey())
+                    && rules.isExcludedDependency(dependency.getGroupId(), dependency.getArtifactId())) {
+                    unpatched.add("managed dependency " + dependency.getManagementKey());
+                }
+            }
+        }
+        if (effective.getBuild() != null) {
+            for (Plugin plugin : effective.getBuild().getPlugins()) {
+                if (!plugins.contains(plugin.getKey())
+                    && rules.isExcludedPlugin(plugin.getGroupId(), plugin.getArtifactId())) {
+                    unpatched.add("plugin " + plugin.getKey());
+                }
+            }
+        }
+        if (!unpatched.isEmpty()) {
+            log.warn(logPrefix + "The patch writer only sanitizes the elements declared in "
+                + project.getFile().getName() + ", the following inherited or managed elements are kept: "
+                + String.join(", ", unpatched) + ". Use the default writer to remove them.");
+        }
+        if (!unexcluded.isEmpty()) {
+            log.warn(logPrefix + "The patch writer does not add the exclusions to the inherited dependencies: "
+                + String.join(", ", unexcluded));
+        }
+    }
+
+    /**
+     * Compiles the rules of the configuration, must be called before any transformation step.
+     */
+    void compileRules() throws MojoExecutionException {
+        rules = RuleSet.compile(configuration);
+        resourceMatcher = ResourceMatcher.compile(configuration.getExcludedResources(),
+            configuration.getModuleName(), project.getBasedir(), getResourceDirectories(project.getBuild()));
+        // With the dependency graph, the artifacts matching partial patterns are excluded with their exact coordinates
+        for (String pattern : dependencyGraphAnalyzer == null || patch ? rules.getPartialPatterns()
+            : Collections.<String>emptyList()) {
+            log.warn(logPrefix + "The excluded dependency pattern " + pattern
+                + " cannot be expressed as a pom exclusion, it only applies to direct dependencies");
+        }
+    }
+
+    /**
+     * Scans the resource roots of the project to find the excluded files, must be called before
+     * {@link #excludeResources(Model)}.
+     */
+    void indexResources() throws MojoExecutionException {
+        try {
+            resourceIndex = ResourceIndex.scan(resourceMatcher, project.getBasedir(),
+                new File(project.getBuild().getDirectory()), getResourceDirectories(project.getBuild()));
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to scan the resource directories", e);
+        }
+        info(resourceIndex.getFileCount() + " excluded resource file(s) found ("
+            + resourceIndex.getByteCount() + " bytes)");
+    }
+
+    private static List<String> getResourceDirectories(Build build) {
+        List<String> directories = new ArrayList<>();
+        if (build != null && build.getResources() != null) {
+            for (Resource resource : build.getResources()) {
+                if (resource.getDirectory() != null) {
+                    directories.add(resource.getDirectory());
+                }
+            }
+        }
+        return directories;
+    }
+
+    private Fingerprint computeFingerprint() throws MojoExecutionException {
+        Fingerprint fingerprint = new Fingerprint()
+            .add("plugin", pluginVersion)
+            .add("config", configurationHash)
+            .add("module", configuration.getModuleName())
+            .add("parameters", parameters)
+            .add("profiles", session.getRequest().getActiveProfiles() + "/"
+                + session.getRequest().getInactiveProfiles())
+            .add("properties", new TreeMap<>(session.getUserProperties()).toString())
+            .add("resources", resourceIndex.describe());
+        try {
+            fingerprint.add("pom", project.getFile());
+            List<Model> models = new ArrayList<>();
+            models.add(project.getOriginalModel());
+            int depth = 0;
+            MavenProject parent = project.getParent();
+            while (parent != null) {
+                fingerprint.add("parent." + depth, parent.getId());
+                fingerprint.add("parent." + depth + ".pom", parent.getFile());
+                models.add(parent.getOriginalModel());
+                parent = parent.getParent();
+                depth++;
+            }
+
+            // The imported poms are resolved again, a changed snapshot or re-resolved pom changes the fingerprint
+            Map<String, File> imports = effectiveModelBuilder.resolveImports(models, getImportProperties(),
+                project.getRemoteProjectRepositories());
+            for (Map.Entry<String, File> entry : imports.entrySet()) {
+                File file = entry.getValue();
+                fingerprint.add("import." + entry.getKey(), file == null ? null : file.getAbsolutePath());
+                fingerprint.add("import." + entry.getKey() + ".pom", file);
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to compute the fingerprint", e);
+        }
+        return fingerprint;
+    }
+
+    /**
+     * @return the properties interpolating the imports of the project, with the coordinates of the configuration as
+     * they are set in the phase A
+     */
+    private Map<String, String> getImportProperties() {
+        Map<String, String> properties = new HashMap<>();
+        for (Properties source : Arrays.asList(session.getSystemProperties(), project.getProperties(),
+            session.getUserProperties())) {
+            for (String name : source.stringPropertyNames()) {
+                properties.put(name, source.getProperty(name));
+            }
+        }
+        properties.put("project.groupId", configuration.getGroupId());
+        properties.put("project.artifactId", configuration.getArtifactId());
+        properties.put("project.version", configuration.getVersion());
+        if (project.getModel().getParent() != null) {
+            properties.put("project.parent.version", configuration.getParentVersion() != null
+                ? configuration.getParentVersion() : project.getModel().getParent().getVersion());
+        }
+        return properties;
+    }
+
+    private void phaseB(Model model, Metrics.Phase phase) throws MojoExecutionException {
+        info("Starting transformation - Phase B");
+
+        // We are working on the effective pom, so we can delete the dependency management section and parent
+        info("Removing parent - working on effective pom");
+        model.setParent(null);
+        info("Removing dependency management - working on effective pom");
+        List<Dependency> managed = model.getDependencyManagement() == null ? Collections.emptyList()
+            : model.getDependencyManagement().getDependencies();
+        model.setDependencyManagement(null);
+
+        fixDependencies(model, phase);
+        if (dependencyGraphAnalyzer != null) {
+            phase.count("exclusionsAdded", excludeReachableDependencies(model, managed));
+        }
+
+        info("Excluding resources");
+        phase.count("resourceExcludesAdded", excludeResources(model));
+
+        info("Removing excluded plugins");
+        phase.count("pluginsRemoved", removePlugins(model));
+
+        phase.count("profilesActivated", activateProfiles(model));
+    }
+
+    /**
+     * @return the number of activated profiles
+     */
+    int activateProfiles(Model model) {
+        int count = 0;
+        for (Profile profile : model.getProfiles()) {
+            if (rules.isActivatedProfile(profile.getId())) {
+                info("Activating profile " + profile.getId());
+                Activation activation = profile.getActivation();
+                if (activation == null) {
+                    activation = new Activation();
+                    profile.setActivation(activation);
+                }
+                profile.getActivation().setActiveByDefault(true);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private Model phaseA(Metrics.Phase phase) throws MojoExecutionException {
+        info("Starting transformation - Phase A");
+        // Work on a copy, the original model of the project must not be altered
+        Model model = project.getOriginalModel().clone();
+
+        info("Setting coordinates");
+        model.setGroupId(configuration.getGroupId());
+        model.setArtifactId(configuration.getArtifactId());
+        model.setVersion(configuration.getVersion());
+
+        if (model.getParent() != null && configuration.getParentVersion() != null) {
+            model.getParent().setVersion(configuration.getParentVersion());
+        }
+
+        fixDependencies(model, phase);
+        return model;
+    }
+
+    void fixDependencies(Model model, Metrics.Phase phase) {
+        info("Removing excluded dependencies");
+        phase.count("dependenciesRemoved", cleanupDependencies(model));
+        // With the dependency graph, the exclusions are computed on the effective model
+        if (dependencyGraphAnalyzer == null) {
+            phase.count("exclusionsAdded", excludeDependencies(model));
+        }
+    }
+
+    /**
+     * @return the number of removed plugins
+     */
+    int removePlugins(Model model) {
+        Build build = model.getBuild();
+        if (build != null && build.getPlugins() != null) {
+            List<Plugin> plugins = build.getPlugins().stream()
+                .filter(plugin -> !rules.isExcludedPlugin(plugin.getGroupId(), plugin.getArtifactId()))
+                .collect(Collectors.toList());
+            int removed = build.getPlugins().size() - plugins.size();
+            build.setPlugins(plugins);
+            return removed;
+        }
+        return 0;
+    }
+
+    /**
+     * Adds the excludes of the resources computed by {@link #indexResources()}, keeping the existing excludes, see
+     * {@link ResourceIndex#getExcludes(File, String)}.
+     *
+     * @return the number of added excludes
+     */
+    int excludeResources(Model model) {
+        int count = 0;
+        Build build = model.getBuild();
+        if (build != null && build.getResources() != null) {
+            for (Resource resource : build.getResources()) {
+                if (resource.getDirectory() == null) {
+                    continue;
+                }
+                Set<String> files = resourceIndex.getExcludes(project.getBasedir(), resource.getDirectory());
+                if (files.isEmpty()) {
+                    continue;
+                }
+                Set<String> excludes = new LinkedHashSet<>(resource.getExcludes());
+                for (String file : files) {
+                    if (excludes.add(file)) {
+                        count++;
+                    }
+                }
+                resource.setExcludes(new ArrayList<>(excludes));
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of added exclusions
+     */
+    int excludeDependencies(Model model) {
+        int count = 0;
+        for (Dependency dependency : model.getDependencies()) {
+            if (dependency.getScope() == null || dependency.getScope().equalsIgnoreCase("compile")) {
+                Set<String> existing = new HashSet<>();
+                for (Exclusion ex : dependency.getExclusions()) {
+                    existing.add(ex.getGroupId() + ":" + ex.getArtifactId());
+                }
+                for (Exclusion ex : rules.getExclusions()) {
+                    if (existing.add(ex.getGroupId() + ":" + ex.getArtifactId())) {
+                        dependency.addExclusion(ex.clone());
+                        count++;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Adds the exclusions to the compile dependencies whose dependency graph reaches an excluded artifact. The
+     * exclusions of the configuration are used when they match the reached artifact, otherwise (partial patterns)
+     * the exact artifact is excluded. If the graph of a dependency cannot be collected, all the exclusions are added
+     * to it.
+     *
+     * @param model   the effective model
+     * @param managed the managed dependencies of the effective model
+     * @return the number of added exclusions
+     */
+    int excludeReachableDependencies(Model model, List<Dependency> managed) {
+        int count = 0;
+        for (Dependency dependency : model.getDependencies()) {
+            if (dependency.getScope() != null && !dependency.getScope().equalsIgnoreCase("compile")) {
+                continue;
+            }
+            Set<String> existing = new HashSet<>();
+            for (Exclusion ex : dependency.getExclusions()) {
+                existing.add(ex.getGroupId() + ":" + ex.getArtifactId());
+            }
+            Set<String> reachable;
+            try {
+                reachable = dependencyGraphAnalyzer.getReachableArtifacts(dependency, managed);
+            } catch (MojoExecutionException e) {
+                log.warn(logPrefix + e.getMessage() + ", excluding all the excluded dependencies");
+                log.debug(e);
+                for (Exclusion ex : rules.getExclusions()) {
+                    if (existing.add(ex.getGroupId() + ":" + ex.getArtifactId())) {
+                        dependency.addExclusion(ex.clone());
+                        count++;
+                    }
+                }
+                continue;
+            }
+            for (String artifact : reachable) {
+                String[] segments = artifact.split(":");
+                if (!rules.isExcludedDependency(segments[0], segments[1])) {
+                    continue;
+                }
+                Exclusion exclusion = findExclusion(segments[0], segments[1]);
+                if (existing.add(exclusion.getGroupId() + ":" + exclusion.getArtifactId())) {
+                    dependency.addExclusion(exclusion);
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private Exclusion findExclusion(String groupId, String artifactId) {
+        for (Exclusion ex : rules.getExclusions()) {
+            if (("*".equals(ex.getGroupId()) || ex.getGroupId().equals(groupId))
+                && ("*".equals(ex.getArtifactId()) || ex.getArtifactId().equals(artifactId))) {
+                return ex.clone();
+            }
+        }
+        Exclusion exclusion = new Exclusion();
+        exclusion.setGroupId(groupId);
+        exclusion.setArtifactId(artifactId);
+        return exclusion;
+    }
+
+    /**
+     * @return the number of removed dependencies
+     */
+    int cleanupDependencies(Model model) {
+        int size = model.getDependencies().size();
+        info("Old set of dependency: " + size);
+        List<Dependency> dependencies = model.getDependencies().stream()
+            .filter(dependency -> !rules.isExcludedDependency(dependency.getGroupId(), dependency.getArtifactId()))
+            .collect(Collectors.toList());
+
+        model.setDependencies(dependencies);
+        info("New set of dependency: " + model.getDependencies().size());
+        return size - dependencies.size();
+    }
+
+    byte[] write(Model model) throws MojoExecutionException {
+        // The absolute project path is replaced while writing, so the generated pom is relocatable
+        String path = project.getBasedir().getAbsolutePath();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Writer writer = new PathReplacingWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8),
+            path, "${project.basedir}")) {
+            new MavenXpp3Writer().write(writer, model);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Cannot serialize the new pom.xml file", e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Writes the content to the given file, unless the file already has this exact content. Keeping the file
+     * untouched preserves its modification date, so downstream incremental steps can skip their work.
+     *
+     * @return {@code true} if the file has been written
+     */
+    private boolean writeIfChanged(File pomFile, byte[] content) throws MojoExecutionException {
+        try {
+            if (pomFile.isFile() && pomFile.length() == content.length
+                && Arrays.equals(Files.readAllBytes(pomFile.toPath()), content)) {
+                return false;
+            }
+            // Written in a temporary file of this execution first, so a concurrent build never reads a partial pom
+            File tmp = File.createTempFile(pomFile.getName(), ".tmp", pomFile.getAbsoluteFile().getParentFile());
+            try {
+                Files.write(tmp.toPath(), content);
+                try {
+                    Files.move(tmp.toPath(), pomFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmp.toPath(), pomFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(tmp.toPath());
+            }
+            return true;
+        } catch (IOException e) {
+            throw new MojoExecutionException("Cannot write the new pom.xml file", e);
+        }
+    }
+
+    private void info(String message) {
+        log.info(logPrefix + message);
+    }
+}
@@ -0,0 +1,56 @@
+package me.escoffier.maven;
+
+import org.apache.maven.model.Model;
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * The effective model of a project shared by the sanitization of its variants. It is computed once, by the first
+ * variant needing it (the variants whose sanitized pom is up to date do not need it), and each variant works on its
+ * own copy. The variants changing the coordinates compute their own effective model.
+ *
+ * @author <a href="http://escoffier.me">Clement Escoffier</a>
+ */
+public class SharedEffectiveModel {
+
+    private final Sanitizer sanitizer;
+    private Model model;
+    private MojoExecutionException failure;
+
+    /**
+     * @param sanitizer the sanitizer computing the effective model, see {@link Sanitizer#buildSharedModel()}
+     */
+    public SharedEffectiveModel(Sanitizer sanitizer) {
+        this.sanitizer = sanitizer;
+    }
+
+    /**
+     * @param configuration the configuration of a variant
+     * @return whether the shared model is the effective model of the variant, see
+     * {@link Sanitizer#hasSharedModel(Configuration)}
+     */
+    public boolean appliesTo(Configuration configuration) {
+        return sanitizer.hasSharedModel(configuration);
+    }
+
+    /**
+     * @return a copy of the effective model
+     * @throws MojoExecutionException if the effective model cannot be computed
+     */
+    public synchronized Model get() throws MojoExecutionException {
+        if (model == null && failure == null) {
+            try {
+                model = sanitizer.buildSharedModel();
+            } catch (MojoExecutionException e) {
+                // Reported once, the other variants fail with the same error
+                failure = e;
+                throw e;
+            }
+        }
+        if (failure != null) {
+            throw new MojoExecutionException("Unable to compute the effective model: " + failure.getMessage(),
+                failure);
+        }
+        // The phase B modifies the model
+        return model.clone();
+    }
+}
@@ -0,0 +1,276 @@
+package me.escoffier.maven;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.DirectoryScanner;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Checks that the archives produced by the reactor do not contain excluded resources, nor embed excluded
+ * dependencies, and fails the build if they do. The checked archives are the main and attached artifacts of each
+ * project (their {@code -sanitized} archive produced by {@code sanitize-jar} if it exists), the archives of the
+ * sanitized builds ({@code sanitized/<id>} in the build directory, checked against the configuration of their
+ * variant) and the archives matching the {@code includes}. The other files of the build directory, such as the
+ * original jar left by {@code sanitize-jar}, are not checked.
+ * <p>
+ * Only the central directory of each archive is read, the entry data is never read, so checking a large archive is
+ * cheap. The archives of all the projects are checked concurrently. An embedded dependency is detected from the
+ * {@code META-INF/maven/groupId/artifactId/} descriptors shaded with its classes.
+ *
+ * @author <a href="http://escoffier.me">Clement Escoffier</a>
+ */
+@Mojo(name = "verify-sanitized", aggregator = true, threadSafe = true)
+public class VerifySanitizedMojo extends AbstractSanitizerMojo {
+
+    private static final String GOAL = "verify-sanitized";
+
+    private static final Set<String> ARCHIVES = new HashSet<>(Arrays.asList("jar", "zip", "war", "ear"));
+
+    private static final String MAVEN_DESCRIPTORS = "META-INF/maven/";
+
+    @Parameter(property = "sanitizer.module")
+    private String module;
+
+    @Parameter(property = "sanitizer.config")
+    private File config;
+
+    /**
+     * The number of archives checked concurrently. The work is mostly I/O, so it does not need to match the number
+     * of processors.
+     */
+    @Parameter(property = "sanitizer.ioThreads", defaultValue = "4")
+    private int ioThreads;
+
+    /**
+     * The additional archives to check, as Ant patterns relative to the directory of each project, such as
+     * {@code target/*-fat.jar}.
+     */
+    @Parameter(property = "sanitizer.verifyIncludes")
+    private List<String> includes;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        Metrics metrics = createMetrics(project, GOAL);
+        try {
+            Map<File, Check> checks = new LinkedHashMap<>();
+            try (Metrics.Phase ignored = metrics.start("configuration")) {
+                for (MavenProject module : session.getProjects()) {
+                    Set<File> archives = getArchives(module);
+                    Map<String, Set<File>> builds = getSanitizedBuilds(module);
+                    if (archives.isEmpty() && builds.isEmpty()) {
+                        continue;
+                    }
+                    ParsedConfiguration parsed = ConfigurationLoader.get(repoSession,
+                        ConfigurationLoader.locate(config, module), getLog());
+                    Configuration configuration = ConfigurationLoader.load(parsed, module, this.module, getLog());
+                    Check check = new Check(createResourceMatcher(configuration, module),
+                        RuleSet.compile(configuration));
+                    for (File archive : archives) {
+                        checks.putIfAbsent(archive, check);
+                    }
+                    for (Map.Entry<String, Set<File>> build : builds.entrySet()) {
+                        // The builds of the other poms than the variants are checked against the main configuration
+                        ParsedConfiguration variant = parsed.getVariants().get(build.getKey());
+                        Check buildCheck = check;
+                        if (variant != null) {
+                            Configuration variantConfiguration = variant.toConfiguration(module)
+                                .setModuleName(configuration.getModuleName());
+                            buildCheck = new Check(createResourceMatcher(variantConfiguration, module),
+                                RuleSet.compile(variantConfiguration));
+                        }
+                        for (File archive : build.getValue()) {
+                            checks.putIfAbsent(archive, buildCheck);
+                        }
+                    }
+                }
+            }
+            if (checks.isEmpty()) {
+                getLog().info("No archive to verify");
+                return;
+            }
+            verify(checks, metrics);
+        } finally {
+            writeReport(project, GOAL, metrics);
+        }
+    }
+
+    private void verify(Map<File, Check> checks, Metrics metrics) throws MojoExecutionException {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(ioThreads, checks.size())),
+            new ThreadFactoryBuilder().setNameFormat("sanitizer-io-%d").setDaemon(true).build());
+        Map<File, Future<List<String>>> results = new LinkedHashMap<>();
+        try {
+            for (Map.Entry<File, Check> entry : checks.entrySet()) {
+                File archive = entry.getKey();
+                results.put(archive, pool.submit(() -> {
+                    try (Metrics.Phase phase = metrics.start(archive.getName())) {
+                        List<String> names = ZipCentralDirectory.list(archive);
+                        List<String> leaks = entry.getValue().check(names);
+                        phase.count("entries", names.size()).count("leaks", leaks.size());
+                        return leaks;
+                    }
+                }));
+            }
+
+            List<String> leaking = new ArrayList<>();
+            List<String> failures = new ArrayList<>();
+            for (Map.Entry<File, Future<List<String>>> entry : results.entrySet()) {
+                String path = entry.getKey().getAbsolutePath();
+                try {
+                    List<String> leaks = entry.getValue().get();
+                    for (String leak : leaks) {
+                        getLog().error(path + " contains " + leak);
+                    }
+                    if (!leaks.isEmpty()) {
+                        leaking.add(entry.getKey().getName());
+                    }
+                } catch (ExecutionException e) {
+                    getLog().error("Unable to verify " + path, e.getCause());
+                    failures.add(entry.getKey().getName());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new MojoExecutionException("Interrupted while verifying the archives", e);
+                }
+            }
+            getLog().info(results.size() + " archive(s) verified, " + leaking.size() + " leaking, "
+                + failures.size() + " failure(s)");
+            if (!failures.isEmpty()) {
+                throw new MojoExecutionException("Unable to verify " + failures);
+            }
+            if (!leaking.isEmpty()) {
+                throw new MojoExecutionException("Excluded resources or dependencies found in " + leaking);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * @return the archives of the main and attached artifacts, and the included archives
+     */
+    private Set<File> getArchives(MavenProject module) {
+        Set<File> archives = new LinkedHashSet<>();
+        List<Artifact> artifacts = new ArrayList<>(module.getAttachedArtifacts());
+        artifacts.add(0, module.getArtifact());
+        for (Artifact artifact : artifacts) {
+            File file = artifact == null ? null : artifact.getFile();
+            if (artifact != null && file == null && artifact == module.getArtifact()) {
+                // The project has not been packaged by this session, but possibly by a previous or nested build
+                file = new File(module.getBuild().getDirectory(), module.getBuild().getFinalName() + "."
+                    + artifact.getArtifactHandler().getExtension());
+            }
+            if (file != null && isArchive(file)) {
+                archives.add(getSanitizedArchive(file).getAbsoluteFile());
+            }
+        }
+        if (includes != null && !includes.isEmpty() && module.getBasedir() != null) {
+            DirectoryScanner scanner = new DirectoryScanner();
+            scanner.setBasedir(module.getBasedir());
+            scanner.setIncludes(includes.toArray(new String[0]));
+            scanner.scan();
+            String[] files = scanner.getIncludedFiles();
+            Arrays.sort(files);
+            for (String file : files) {
+                archives.add(new File(module.getBasedir(), file).getAbsoluteFile());
+            }
+        }
+        return archives;
+    }
+
+    /**
+     * @return the archive written by {@code sanitize-jar} from the given archive, the archive itself if none
+     */
+    private static File getSanitizedArchive(File archive) {
+        String name = archive.getName();
+        int index = name.lastIndexOf('.');
+        File sanitized = new File(archive.getParentFile(), name.substring(0, index) + "-sanitized"
+            + name.substring(index));
+        return sanitized.isFile() ? sanitized : archive;
+    }
+
+    /**
+     * @return the archives built by {@code build-with-sanitized-pom} in {@code sanitized/<id>}, keyed by build id
+     */
+    private static Map<String, Set<File>> getSanitizedBuilds(MavenProject module) {
+        Map<String, Set<File>> builds = new TreeMap<>();
+        File[] directories = new File(module.getBuild().getDirectory(), "sanitized").listFiles(File::isDirectory);
+        if (directories == null) {
+            return builds;
+        }
+        for (File directory : directories) {
+            File[] files = directory.listFiles();
+            if (files == null) {
+                continue;
+            }
+            Arrays.sort(files);
+            Set<File> archives = new LinkedHashSet<>();
+            for (File file : files) {
+                if (isArchive(file)) {
+                    archives.add(file.getAbsoluteFile());
+                }
+            }
+            if (!archives.isEmpty()) {
+                builds.put(directory.getName(), archives);
+            }
+        }
+        return builds;
+    }
+
+    private static boolean isArchive(File file) {
+        String name = file.getName();
+        int index = name.lastIndexOf('.');
+        return file.isFile() && index != -1
+            && ARCHIVES.contains(name.substring(index + 1).toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * The rules the archives of a project are checked against.
+     */
+    private static class Check {
+        private final ResourceMatcher matcher;
+        private final RuleSet rules;
+
+        Check(ResourceMatcher matcher, RuleSet rules) {
+            this.matcher = matcher;
+            this.rules = rules;
+        }
+
+        /**
+         * @param names the entry names of an archive
+         * @return the description of the excluded resources and dependencies found in the archive
+         */
+        List<String> check(List<String> names) {
+            List<String> leaks = new ArrayList<>();
+            Set<String> dependencies = new TreeSet<>();
+            for (String name : names) {
+                if (name.endsWith("/")) {
+                    continue;
+                }
+                if (matcher.matches(name)) {
+                    leaks.add("the excluded resource " + name);
+                }
+                if (name.startsWith(MAVEN_DESCRIPTORS)) {
+                    // META-INF/maven/groupId/artifactId/pom.xml
+                    String[] segments = name.substring(MAVEN_DESCRIPTORS.length()).split("/");
+                    if (segments.length == 3 && rules.isExcludedDependency(segments[0], segments[1])) {
+                        dependencies.add(segments[0] + ":" + segments[1]);
+                    }
+                }
+            }
+            for (String dependency : dependencies) {
+                leaks.add("the excluded dependency " + dependency);
+            }
+            return leaks;
+        }
+    }
+}
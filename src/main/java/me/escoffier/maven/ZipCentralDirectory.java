@@ -0,0 +1,119 @@
+package me.escoffier.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lists the entries of a zip archive by reading its central directory only. The end of the archive and the central
+ * directory are memory-mapped, the entry data is never read, so listing a large archive only touches a few pages.
+ * Zip64 archives are supported.
+ *
+ * @author <a href="http://escoffier.me">Clement Escoffier</a>
+ */
+public final class ZipCentralDirectory {
+
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int END_SIZE = 22;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int ZIP64_LOCATOR_SIZE = 20;
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    private static final int ENTRY_SIGNATURE = 0x02014b50;
+    private static final int ENTRY_SIZE = 46;
+    private static final int MAX_COMMENT = 0xFFFF;
+
+    private ZipCentralDirectory() {
+        // Avoid direct instantiation
+    }
+
+    /**
+     * Lists the entry names of the given archive.
+     *
+     * @param archive the archive
+     * @return the entry names, in the central directory order
+     * @throws IOException if the archive cannot be read or is not a valid zip archive
+     */
+    public static List<String> list(File archive) throws IOException {
+        try (FileChannel channel = FileChannel.open(archive.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < END_SIZE) {
+                throw new IOException(archive.getAbsolutePath() + " is not a zip archive");
+            }
+
+            // The end of central directory record is followed by a comment of up to 64KB
+            long tailStart = Math.max(0, size - END_SIZE - MAX_COMMENT);
+            MappedByteBuffer tail = map(channel, tailStart, size - tailStart);
+            int end = -1;
+            for (int i = tail.limit() - END_SIZE; i >= 0; i--) {
+                if (tail.getInt(i) == END_SIGNATURE) {
+                    end = i;
+                    break;
+                }
+            }
+            if (end == -1) {
+                throw new IOException(archive.getAbsolutePath() + " is not a zip archive");
+            }
+
+            long count = tail.getShort(end + 10) & 0xFFFF;
+            long directorySize = tail.getInt(end + 12) & 0xFFFFFFFFL;
+            long directoryOffset = tail.getInt(end + 16) & 0xFFFFFFFFL;
+            int locator = end - ZIP64_LOCATOR_SIZE;
+            if (locator >= 0 && tail.getInt(locator) == ZIP64_LOCATOR_SIGNATURE) {
+                long zip64End = tail.getLong(locator + 8);
+                if (zip64End < 0 || zip64End + 56 > size) {
+                    throw new IOException("Invalid zip64 end of central directory in " + archive.getAbsolutePath());
+                }
+                MappedByteBuffer record = map(channel, zip64End, 56);
+                if (record.getInt(0) != ZIP64_END_SIGNATURE) {
+                    throw new IOException("Invalid zip64 end of central directory in " + archive.getAbsolutePath());
+                }
+                count = record.getLong(32);
+                directorySize = record.getLong(40);
+                directoryOffset = record.getLong(48);
+            }
+            if (directoryOffset < 0 || directorySize < 0 || directoryOffset + directorySize > size
+                || directorySize > Integer.MAX_VALUE) {
+                throw new IOException("Invalid central directory in " + archive.getAbsolutePath());
+            }
+
+            MappedByteBuffer directory = map(channel, directoryOffset, directorySize);
+            List<String> names = new ArrayList<>((int) Math.min(count, 1 << 16));
+            int position = 0;
+            byte[] buffer = new byte[256];
+            while (position + ENTRY_SIZE <= directory.limit() && directory.getInt(position) == ENTRY_SIGNATURE) {
+                int nameLength = directory.getShort(position + 28) & 0xFFFF;
+                int extraLength = directory.getShort(position + 30) & 0xFFFF;
+                int commentLength = directory.getShort(position + 32) & 0xFFFF;
+                if (position + ENTRY_SIZE + nameLength + extraLength + commentLength > directory.limit()) {
+                    throw new IOException("Truncated central directory entry at " + (directoryOffset + position)
+                        + " in " + archive.getAbsolutePath());
+                }
+                if (buffer.length < nameLength) {
+                    buffer = new byte[nameLength];
+                }
+                directory.position(position + ENTRY_SIZE);
+                directory.get(buffer, 0, nameLength);
+                names.add(new String(buffer, 0, nameLength, StandardCharsets.UTF_8));
+                position += ENTRY_SIZE + nameLength + extraLength + commentLength;
+            }
+            // Without zip64, the count is truncated to 16 bits
+            if ((names.size() & 0xFFFF) != (count & 0xFFFF)) {
+                throw new IOException("Truncated central directory in " + archive.getAbsolutePath() + ", "
+                    + names.size() + " entries read, " + count + " expected");
+            }
+            return names;
+        }
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+}
@@ -0,0 +1,97 @@
+package me.escoffier.maven;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * Checks the matching of the coordinates by {@link CoordinateMatcher}.
+ *
+ * @author <a href="http://escoffier.me">Clement Escoffier</a>
+ */
+public class CoordinateMatcherTest {
+
+    @Test
+    public void testThatLiteralCoordinatesAreMatchedExactly() {
+        CoordinateMatcher matcher = CoordinateMatcher.compile(Collections.singletonList("io.vertx:vertx-lang-js"));
+        assertThat(matcher.matches("io.vertx", "vertx-lang-js")).isTrue();
+        assertThat(matcher.matches("io.vertx", "vertx-lang-js2")).isFalse();
+        assertThat(matcher.matches("io.vertx.ext", "vertx-lang-js")).isFalse();
+        assertThat(matcher.getCoordinates()).containsExactly("io.vertx:vertx-lang-js");
+    }
+
+    @Test
+    public void testThatAnArtifactIdMatchesAnyGroupId() {
+        CoordinateMatcher matcher = CoordinateMatcher.compile(Collections.singletonList("kotlin-maven-plugin"));
+        assertThat(matcher.matches("org.jetbrains.kotlin", "kotlin-maven-plugin")).isTrue();
+        assertThat(matcher.matches("com.acme", "kotlin-maven-plugin")).isTrue();
+        assertThat(matcher.matches("kotlin-maven-plugin", "other")).isFalse();
+        assertThat(matcher.getCoordinates()).isEmpty();
+    }
+
+    @Test
+    public void testThatTheWildcardMatchesWithinASegment() {
+        CoordinateMatcher matcher = CoordinateMatcher.compile(Arrays.asList("*:vertx-lang-*", "org.codehaus.*:*"));
+        assertThat(matcher.matches("io.vertx", "vertx-lang-js")).isTrue();
+        assertThat(matcher.matches("com.acme", "vertx-lang-")).isTrue();
+        assertThat(matcher.matches("io.vertx", "vertx-core")).isFalse();
+        assertThat(matcher.matches("org.codehaus.mojo", "exec-maven-plugin")).isTrue();
+        assertThat(matcher.matches("org.codehaus", "exec-maven-plugin")).isFalse();
+        // The wildcard does not cross the separator
+        assertThat(CoordinateMatcher.compile(Collections.singletonList("io.*")).matches("io.vertx", "a")).isFalse();
+        assertThat(CoordinateMatcher.compile(Collections.singletonList("io.*")).matches("a", "io.vertx")).isTrue();
+    }
+
+    @Test
+    public void testThatTheQuestionMarkIsLiteral() {
+        CoordinateMatcher matcher = CoordinateMatcher.compile(Arrays.asList("io.vertx:vertx-?", "*:core?"));
+        assertThat(matcher.matches("io.vertx", "vertx-?")).isTrue();
+        assertThat(matcher.matches("io.vertx", "vertx-a")).isFalse();
+        assertThat(matcher.matches("io.vertx", "core?")).isTrue();
+        assertThat(matcher.matches("io.vertx", "core1")).isFalse();
+    }
+
+    @Test
+    public void testThatRegexMetacharactersAreLiteral() {
+        CoordinateMatcher matcher = CoordinateMatcher.compile(Arrays.asList("io.vertx:*-lang+js", "*:a.(b)|[c]\\E$"));
+        assertThat(matcher.matches("io.vertx", "vertx-lang+js")).isTrue();
+        assertThat(matcher.matches("io.vertx", "vertx-langgjs")).isFalse();
+        assertThat(matcher.matches("io.vertx", "a.(b)|[c]\\E$")).isTrue();
+        assertThat(matcher.matches("io.vertx", "aX(b)|[c]\\E$")).isFalse();
+        assertThat(matcher.matches("io.vertx", "a.b")).isFalse();
+        // The dots of the literal coordinates are not wildcards either
+        assertThat(CoordinateMatcher.compile(Collections.singletonList("io.vertx:core")).matches("ioXvertx", "core"))
+            .isFalse();
+    }
+
+    @Test
+    public void testThatPatternsAreTrimmed() {
+        CoordinateMatcher matcher = CoordinateMatcher.compile(Arrays.asList(" io.vertx:vertx-core ", " *:js "));
+        assertThat(matcher.matches("io.vertx", "vertx-core")).isTrue();
+        assertThat(matcher.matches("com.acme", "js")).isTrue();
+    }
+
+    @Test
+    public void testThatAnEmptyMatcherMatchesNothing() {
+        CoordinateMatcher matcher = CoordinateMatcher.compile(Collections.emptyList());
+        assertThat(matcher.isEmpty()).isTrue();
+        assertThat(matcher.matches("io.vertx", "vertx-core")).isFalse();
+        assertThat(CoordinateMatcher.compile(Collections.singletonList("*:*")).isEmpty()).isFalse();
+    }
+
+    @Test
+    public void testThatInvalidPatternsAreRejected() {
+        for (String pattern : Arrays.asList("", "  ", "a:b:c", "io.vertx:vertx-core:3.0.0")) {
+            try {
+                CoordinateMatcher.compile(Collections.singletonList(pattern));
+                fail("The pattern '" + pattern + "' is invalid");
+            } catch (IllegalArgumentException e) {
+                assertThat(e).hasMessageContaining("groupId:artifactId");
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package me.escoffier.maven;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks the detection of the changed inputs and outputs by {@link Fingerprint}.
+ *
+ * @author <a href="http://escoffier.me">Clement Escoffier</a>
+ */
+public class FingerprintTest {
+
+    private static final byte[] OUTPUT = "<project/>".getBytes(StandardCharsets.UTF_8);
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private File pom;
+    private File manifest;
+    private File output;
+
+    @Before
+    public void setUp() throws IOException {
+        pom = temp.newFile("pom.xml");
+        FileUtils.write(pom, "<project><artifactId>a</artifactId></project>", StandardCharsets.UTF_8);
+        manifest = new File(temp.getRoot(), "target/sanitizer/fingerprint.properties");
+        output = temp.newFile("pom.xml.sanitized");
+        FileUtils.writeByteArrayToFile(output, OUTPUT);
+    }
+
+    @Test
+    public void testThatUnchangedInputsAreUpToDate() throws IOException {
+        fingerprint("a").write(manifest, OUTPUT);
+        assertThat(manifest).isFile();
+        assertThat(fingerprint("a").findChange(manifest, output)).isNull();
+    }
+
+    @Test
+    public void testThatAMissingManifestIsReported() throws IOException {
+        assertThat(fingerprint("a").findChange(manifest, output)).isEqualTo("manifest");
+    }
+
+    @Test
+    public void testThatAChangedValueIsReported() throws IOException {
+        fingerprint("a").write(manifest, OUTPUT);
+        assertThat(fingerprint("b").findChange(manifest, output)).isEqualTo("config");
+    }
+
+    @Test
+    public void testThatAChangedFileIsReported() throws IOException {
+        fingerprint("a").write(manifest, OUTPUT);
+        FileUtils.write(pom, "<project><artifactId>b</artifactId></project>", StandardCharsets.UTF_8);
+        assertThat(fingerprint("a").findChange(manifest, output)).isEqualTo("pom");
+    }
+
+    @Test
+    public void testThatADeletedFileIsReported() throws IOException {
+        fingerprint("a").write(manifest, OUTPUT);
+        assertThat(pom.delete()).isTrue();
+        assertThat(fingerprint("a").findChange(manifest, output)).isEqualTo("pom");
+    }
+
+    @Test
+    public void testThatAnAddedOrRemovedInputIsReported() throws IOException {
+        fingerprint("a").write(manifest, OUTPUT);
+        assertThat(fingerprint("a").add("import.io.vertx:vertx-dependencies", "3.0.0").findChange(manifest, output))
+            .isEqualTo("import.io.vertx:vertx-dependencies");
+
+        fingerprint("a").add("import.io.vertx:vertx-dependencies", "3.0.0").write(manifest, OUTPUT);
+        assertThat(fingerprint("a").findChange(manifest, output)).isEqualTo("inputs");
+    }
+
+    @Test
+    public void testThatAModifiedOrDeletedOutputIsReported() throws IOException {
+        fingerprint("a").write(manifest, OUTPUT);
+        FileUtils.write(output, "<project></project>", StandardCharsets.UTF_8);
+        assertThat(fingerprint("a").findChange(manifest, output)).isEqualTo(Fingerprint.OUTPUT);
+
+        assertThat(output.delete()).isTrue();
+        assertThat(fingerprint("a").findChange(manifest, output)).isEqualTo(Fingerprint.OUTPUT);
+    }
+
+    @Test
+    public void testThatTheManifestHoldsTheHashes() throws IOException {
+        fingerprint("a").write(manifest, OUTPUT);
+        Properties recorded = new Properties();
+        try (InputStream in = new FileInputStream(manifest)) {
+            recorded.load(in);
+        }
+        assertThat(recorded.stringPropertyNames()).containsOnly("config", "pom", "plugin", Fingerprint.OUTPUT);
+        assertThat(recorded.getProperty(Fingerprint.OUTPUT)).isEqualTo(Fingerprint.hash(OUTPUT)).hasSize(64);
+        assertThat(recorded.getProperty("plugin")).isEqualTo(Fingerprint.hash(new byte[0]));
+
+        // A tampered manifest is not up to date
+        recorded.setProperty("config", Fingerprint.hash(new byte[0]));
+        try (OutputStream out = new FileOutputStream(manifest)) {
+            recorded.store(out, null);
+        }
+        assertThat(fingerprint("a").findChange(manifest, output)).isEqualTo("config");
+    }
+
+    private Fingerprint fingerprint(String config) throws IOException {
+        return new Fingerprint()
+            .add("config", config)
+            .add("plugin", (String) null)
+            .add("pom", pom);
+    }
+}
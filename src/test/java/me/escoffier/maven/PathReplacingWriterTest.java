@@ -0,0 +1,81 @@
+package me.escoffier.maven;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * Checks the replacement of the paths by {@link PathReplacingWriter}.
+ *
+ * @author <a href="http://escoffier.me">Clement Escoffier</a>
+ */
+public class PathReplacingWriterTest {
+
+    private static final String PATH = "/home/build/project";
+
+    @Test
+    public void testThatAllTheOccurrencesAreReplaced() throws IOException {
+        assertThat(replace("<dir>/home/build/project/src</dir><out>/home/build/project</out>"))
+            .isEqualTo("<dir>${basedir}/src</dir><out>${basedir}</out>");
+    }
+
+    @Test
+    public void testThatContentWithoutThePathIsUnchanged() throws IOException {
+        assertThat(replace("")).isEmpty();
+        assertThat(replace("<project>\n  <name>a</name>\n</project>\n"))
+            .isEqualTo("<project>\n  <name>a</name>\n</project>\n");
+    }
+
+    @Test
+    public void testThatAPartialMatchIsKept() throws IOException {
+        // The prefix is written back when the path is not complete
+        assertThat(replace("/home/build/other /home/build/project")).isEqualTo("/home/build/other ${basedir}");
+        // A failed match can be followed by the start of the path
+        assertThat(replace("//home/build/project")).isEqualTo("/${basedir}");
+        // A prefix at the end of the content is written on close
+        assertThat(replace("a /home/build/proj")).isEqualTo("a /home/build/proj");
+    }
+
+    @Test
+    public void testThatAPathSplitAcrossWritesIsReplaced() throws IOException {
+        StringWriter result = new StringWriter();
+        try (Writer writer = new PathReplacingWriter(result, PATH, "${basedir}")) {
+            writer.write("<dir>/home/bu");
+            writer.write('i');
+            writer.write("xxld/project/src</dir>".toCharArray(), 2, 20);
+        }
+        assertThat(result.toString()).isEqualTo("<dir>${basedir}/src</dir>");
+    }
+
+    @Test
+    public void testThatTheOffsetsAreHonored() throws IOException {
+        StringWriter result = new StringWriter();
+        try (Writer writer = new PathReplacingWriter(result, PATH, "${basedir}")) {
+            writer.write("xx/home/build/project/a.txtyy", 2, 25);
+        }
+        assertThat(result.toString()).isEqualTo("${basedir}/a.txt");
+    }
+
+    @Test
+    public void testThatAnEmptyPathIsRejected() {
+        try {
+            new PathReplacingWriter(new StringWriter(), "", "${basedir}");
+            fail("The path is empty");
+        } catch (IllegalArgumentException e) {
+            assertThat(e).hasMessageContaining("must not be empty");
+        }
+    }
+
+    private static String replace(String content) throws IOException {
+        StringWriter result = new StringWriter();
+        try (Writer writer = new PathReplacingWriter(result, PATH, "${basedir}")) {
+            writer.write(content);
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,113 @@
+package me.escoffier.maven;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.model.Resource;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * Checks the poms patched by {@link PomPatcher} against the expected poms.
+ *
+ * @author <a href="http://escoffier.me">Clement Escoffier</a>
+ */
+public class PomPatcherTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void testThatTheOriginalTextIsKept() throws Exception {
+        Configuration configuration = new Configuration()
+            .addExcludedDependency("io.vertx:vertx-lang-js")
+            .addExcludedPlugin("org.codehaus.mojo:*")
+            .addProfile("community");
+        PomPatcher patcher = new PomPatcher()
+            .setCoordinates("io.vertx", "io.vertx", "vertx-core", "3.0.0", "3.0.0")
+            .setRules(RuleSet.compile(configuration));
+
+        assertThat(patch(patcher, "formatting.xml")).isEqualTo(read("formatting-expected.xml"));
+    }
+
+    @Test
+    public void testThatTheCoordinatesAreNotDuplicated() throws Exception {
+        PomPatcher patcher = new PomPatcher()
+            .setCoordinates("com.acme", "io.vertx", "vertx-core-community", "3.0.0-acme", "3.0.0")
+            .setParentVersion("11")
+            .setRules(RuleSet.compile(new Configuration()));
+
+        assertThat(patch(patcher, "coordinates.xml")).isEqualTo(read("coordinates-expected.xml"));
+    }
+
+    @Test
+    public void testThatTheExcludedResourcesAreAdded() throws Exception {
+        File basedir = temp.getRoot();
+        File js = new File(basedir, "src/main/resources/vertx-js/core.js");
+        FileUtils.write(js, "// js", StandardCharsets.UTF_8);
+        FileUtils.write(new File(basedir, "src/main/resources/vertx.properties"), "a=b", StandardCharsets.UTF_8);
+        File pom = new File(basedir, "pom.xml");
+        FileUtils.copyFile(new File("src/test/resources/patcher/resources.xml"), pom);
+
+        Resource resource = new Resource();
+        resource.setDirectory(new File(basedir, "src/main/resources").getAbsolutePath());
+        ResourceMatcher matcher = ResourceMatcher.compile(Collections.singletonList("src/main/resources/**/*.js"),
+            null, basedir, Collections.singletonList(resource.getDirectory()));
+        ResourceIndex index = ResourceIndex.scan(matcher, basedir, Collections.singletonList(resource.getDirectory()));
+        PomPatcher patcher = new PomPatcher()
+            .setCoordinates("io.vertx", "io.vertx", "vertx-core", "3.0.0-acme", "3.0.0")
+            .setRules(RuleSet.compile(new Configuration()))
+            .setResources(index, basedir, new File(basedir, "target"), Collections.singletonList(resource));
+
+        assertThat(patch(patcher, pom)).isEqualTo(read("resources-expected.xml"));
+    }
+
+    @Test
+    public void testThatTheEncodingIsKept() throws Exception {
+        File pom = temp.newFile("pom.xml");
+        String content = "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>\n<project>\n  <name>Caf\u00e9</name>\n"
+            + "  <artifactId>vertx-core</artifactId>\n</project>\n";
+        FileUtils.write(pom, content, StandardCharsets.ISO_8859_1);
+        PomPatcher patcher = new PomPatcher()
+            .setCoordinates("io.vertx", "io.vertx", "vertx-core", "3.0.0", "3.0.0")
+            .setRules(RuleSet.compile(new Configuration()));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        patcher.patch(pom, out, new Metrics("test", "patch", false).start("patch"));
+        assertThat(out.toByteArray()).isEqualTo(content.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    @Test
+    public void testThatAnInvalidPomIsReported() throws Exception {
+        File pom = temp.newFile("pom.xml");
+        FileUtils.write(pom, "<project><artifactId>a</project>", StandardCharsets.UTF_8);
+        try {
+            patch(new PomPatcher().setRules(RuleSet.compile(new Configuration())), pom);
+            fail("The pom is invalid");
+        } catch (IOException e) {
+            assertThat(e).hasMessageContaining(pom.getAbsolutePath());
+        }
+    }
+
+    private String patch(PomPatcher patcher, String pom) throws IOException {
+        return patch(patcher, new File("src/test/resources/patcher", pom));
+    }
+
+    private String patch(PomPatcher patcher, File pom) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        patcher.patch(pom, out, new Metrics("test", "patch", false).start("patch"));
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private String read(String pom) throws IOException {
+        return FileUtils.readFileToString(new File("src/test/resources/patcher", pom), StandardCharsets.UTF_8);
+    }
+}
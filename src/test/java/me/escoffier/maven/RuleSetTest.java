@@ -0,0 +1,99 @@
+package me.escoffier.maven;
+
+import org.apache.maven.model.Exclusion;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * Checks the compilation of the exclusion rules by {@link RuleSet}.
+ *
+ * @author <a href="http://escoffier.me">Clement Escoffier</a>
+ */
+public class RuleSetTest {
+
+    @Test
+    public void testThatTheExcludedDependenciesAndPluginsAreMatched() throws Exception {
+        RuleSet rules = RuleSet.compile(new Configuration()
+            .addExcludedDependency("io.vertx:vertx-lang-js")
+            .addExcludedDependency("*:vertx-lang-groovy")
+            .addExcludedPlugin("org.codehaus.mojo:*")
+            .addExcludedPlugin("kotlin-maven-plugin"));
+
+        assertThat(rules.isExcludedDependency("io.vertx", "vertx-lang-js")).isTrue();
+        assertThat(rules.isExcludedDependency("com.acme", "vertx-lang-groovy")).isTrue();
+        assertThat(rules.isExcludedDependency("io.vertx", "vertx-core")).isFalse();
+        assertThat(rules.isExcludedPlugin("org.codehaus.mojo", "exec-maven-plugin")).isTrue();
+        assertThat(rules.isExcludedPlugin("org.jetbrains.kotlin", "kotlin-maven-plugin")).isTrue();
+        assertThat(rules.isExcludedPlugin("org.apache.maven.plugins", "maven-jar-plugin")).isFalse();
+        // Dependency and plugin rules are separate
+        assertThat(rules.isExcludedPlugin("io.vertx", "vertx-lang-js")).isFalse();
+        assertThat(rules.isExcludedDependency("org.codehaus.mojo", "exec-maven-plugin")).isFalse();
+    }
+
+    @Test
+    public void testThatExactAndWholeSegmentPatternsBecomeExclusions() throws Exception {
+        RuleSet rules = RuleSet.compile(new Configuration()
+            .addExcludedDependency("io.vertx:vertx-lang-js")
+            .addExcludedDependency("org.jruby:*")
+            .addExcludedDependency("*:*"));
+
+        assertThat(coordinates(rules.getExclusions()))
+            .containsExactly("io.vertx:vertx-lang-js", "org.jruby:*", "*:*");
+        assertThat(rules.getPartialPatterns()).isEmpty();
+    }
+
+    @Test
+    public void testThatPartialPatternsOnlyApplyToDirectDependencies() throws Exception {
+        RuleSet rules = RuleSet.compile(new Configuration()
+            .addExcludedDependency("*:vertx-lang-*")
+            .addExcludedDependency("io.vertx.*:vertx-web")
+            .addExcludedDependency("io.vertx:vertx-core"));
+
+        // Pom exclusions only support exact values or '*', the partial patterns are not added as exclusions
+        assertThat(coordinates(rules.getExclusions())).containsExactly("io.vertx:vertx-core");
+        assertThat(rules.getPartialPatterns()).containsExactly("*:vertx-lang-*", "io.vertx.*:vertx-web");
+        // but they still match the direct dependencies
+        assertThat(rules.isExcludedDependency("io.vertx", "vertx-lang-ruby")).isTrue();
+        assertThat(rules.isExcludedDependency("io.vertx.ext", "vertx-web")).isTrue();
+    }
+
+    @Test
+    public void testThatTheExcludedDependenciesRequireAGroupIdAndAnArtifactId() throws Exception {
+        for (String pattern : Arrays.asList("vertx-lang-js", "io.vertx:vertx-lang-js:3.0.0", ":")) {
+            try {
+                RuleSet.compile(new Configuration().addExcludedDependency(pattern));
+                fail("The excluded dependency '" + pattern + "' is invalid");
+            } catch (MojoExecutionException e) {
+                assertThat(e).hasMessageContaining(pattern).hasMessageContaining("groupId:artifactId");
+            }
+        }
+    }
+
+    @Test
+    public void testThatAnInvalidPluginPatternIsRejected() {
+        try {
+            RuleSet.compile(new Configuration().addExcludedPlugin("a:b:c"));
+            fail("The excluded plugin is invalid");
+        } catch (MojoExecutionException e) {
+            assertThat(e).hasMessageContaining("a:b:c");
+        }
+    }
+
+    @Test
+    public void testThatTheActivatedProfilesAreKnown() throws Exception {
+        RuleSet rules = RuleSet.compile(new Configuration().addProfile("community"));
+        assertThat(rules.isActivatedProfile("community")).isTrue();
+        assertThat(rules.isActivatedProfile("vendor")).isFalse();
+    }
+
+    private static List<String> coordinates(List<Exclusion> exclusions) {
+        return exclusions.stream().map(e -> e.getGroupId() + ":" + e.getArtifactId()).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,132 @@
+package me.escoffier.maven;
+
+import org.apache.commons.compress.archivers.zip.Zip64Mode;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * Checks the listing of the zip archives from their central directory.
+ *
+ * @author <a href="http://escoffier.me">Clement Escoffier</a>
+ */
+public class ZipCentralDirectoryTest {
+
+    private static final List<String> NAMES = Arrays.asList("META-INF/", "META-INF/MANIFEST.MF", "vertx-js/core.js",
+        "io/vertx/core/Vertx.class");
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void testThatTheEntriesAreListed() throws Exception {
+        File archive = zip(Zip64Mode.Never);
+        assertThat(ZipCentralDirectory.list(archive)).containsExactlyElementsOf(NAMES);
+    }
+
+    @Test
+    public void testThatTheEntriesOfAZip64ArchiveAreListed() throws Exception {
+        File archive = zip(Zip64Mode.Always);
+        byte[] content = Files.readAllBytes(archive.toPath());
+        // The archive has a zip64 end of central directory record
+        assertThat(indexOf(content, 0x06064b50)).isNotEqualTo(-1);
+        assertThat(ZipCentralDirectory.list(archive)).containsExactlyElementsOf(NAMES);
+    }
+
+    @Test
+    public void testThatAFileThatIsNotAnArchiveIsRejected() throws Exception {
+        File file = temp.newFile("not-a-zip.jar");
+        FileUtils.write(file, "This is not a zip archive, but it is long enough", StandardCharsets.UTF_8);
+        assertRejected(file);
+    }
+
+    @Test
+    public void testThatATruncatedEntryIsRejected() throws Exception {
+        File archive = zip(Zip64Mode.Never);
+        byte[] content = Files.readAllBytes(archive.toPath());
+        // The name of the last entry extends past the central directory
+        int entry = lastIndexOf(content, 0x02014b50);
+        ByteBuffer.wrap(content).order(ByteOrder.LITTLE_ENDIAN).putShort(entry + 28, (short) 0xFFFF);
+        Files.write(archive.toPath(), content);
+        assertRejected(archive);
+    }
+
+    @Test
+    public void testThatAnInvalidCentralDirectoryOffsetIsRejected() throws Exception {
+        File archive = zip(Zip64Mode.Never);
+        byte[] content = Files.readAllBytes(archive.toPath());
+        int end = lastIndexOf(content, 0x06054b50);
+        ByteBuffer.wrap(content).order(ByteOrder.LITTLE_ENDIAN).putInt(end + 16, content.length);
+        Files.write(archive.toPath(), content);
+        assertRejected(archive);
+    }
+
+    @Test
+    public void testThatAnInvalidZip64RecordOffsetIsRejected() throws Exception {
+        File archive = zip(Zip64Mode.Always);
+        byte[] content = Files.readAllBytes(archive.toPath());
+        int locator = lastIndexOf(content, 0x07064b50);
+        ByteBuffer.wrap(content).order(ByteOrder.LITTLE_ENDIAN).putLong(locator + 8, -1L);
+        Files.write(archive.toPath(), content);
+        assertRejected(archive);
+    }
+
+    private void assertRejected(File archive) {
+        try {
+            ZipCentralDirectory.list(archive);
+            fail("The archive is invalid");
+        } catch (IOException e) {
+            assertThat(e).hasMessageContaining(archive.getAbsolutePath());
+        }
+    }
+
+    private File zip(Zip64Mode mode) throws IOException {
+        File archive = temp.newFile(mode + ".jar");
+        try (ZipArchiveOutputStream out = new ZipArchiveOutputStream(archive)) {
+            out.setUseZip64(mode);
+            for (String name : NAMES) {
+                out.putArchiveEntry(new ZipArchiveEntry(name));
+                if (!name.endsWith("/")) {
+                    out.write(name.getBytes(StandardCharsets.UTF_8));
+                }
+                out.closeArchiveEntry();
+            }
+        }
+        return archive;
+    }
+
+    private static int indexOf(byte[] content, int signature) {
+        ByteBuffer buffer = ByteBuffer.wrap(content).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i + 4 <= content.length; i++) {
+            if (buffer.getInt(i) == signature) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int lastIndexOf(byte[] content, int signature) {
+        ByteBuffer buffer = ByteBuffer.wrap(content).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = content.length - 4; i >= 0; i--) {
+            if (buffer.getInt(i) == signature) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}